@@ -0,0 +1,8 @@
+package com.yychainsaw.qinglianapp.data.model.dto
+
+// 游标分页结果：nextCursor 为 null 表示没有更多数据
+data class CursorPageBean<T>(
+    val items: List<T> = emptyList(),
+    val nextCursor: String? = null,
+    val hasMore: Boolean = false
+)
@@ -4,5 +4,7 @@ data class MessageSendDTO(
     val receiverId: String? = null,
     val groupId: Long? = null,
     val content: String,
-    val type: String
+    val type: String,
+    // STOMP 发送时用于对应回执
+    val clientMsgId: String? = null
 )
\ No newline at end of file
@@ -0,0 +1,7 @@
+package com.yychainsaw.qinglianapp.data.model.vo
+
+// 角标推送帧: deltas 为变化量，values 为服务端最新值 (可能为空)
+data class BadgeVO(
+    val deltas: Map<String, Long>? = null,
+    val values: Map<String, Long>? = null
+)
@@ -19,5 +19,8 @@ data class FriendVO(
     val lastMessageTime: String? = null,
 
     @SerializedName("unreadCount", alternate = ["unread_count", "unread", "count"])
-    val unreadCount: Int = 0
+    val unreadCount: Int = 0,
+
+    // 是否在线 (服务端按 WebSocket 会话实时填充)
+    val online: Boolean = false
 )
@@ -6,5 +6,6 @@ data class GroupMemberVO(
     val nickname: String?,
     val avatarUrl: String?,
     val role: String, // 例如: "OWNER", "ADMIN", "MEMBER"
-    val joinedAt: String?
+    val joinedAt: String?,
+    val online: Boolean = false
 )
\ No newline at end of file
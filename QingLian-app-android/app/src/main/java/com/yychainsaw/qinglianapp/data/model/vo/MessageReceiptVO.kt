@@ -0,0 +1,9 @@
+package com.yychainsaw.qinglianapp.data.model.vo
+
+// STOMP 发送消息的回执，status: OK / FAILED / TIMEOUT (客户端等待超时)
+data class MessageReceiptVO(
+    val clientMsgId: String?,
+    val status: String,
+    val error: String? = null,
+    val message: MessageVO? = null
+)
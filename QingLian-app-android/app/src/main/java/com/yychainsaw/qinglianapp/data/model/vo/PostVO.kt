@@ -21,6 +21,10 @@ data class PostVO(
     @SerializedName("images", alternate = ["imgs", "imageUrls", "imgUrls", "image_urls"])
     val imageUrls: List<String>? = null,
 
+    // 列表页缩略图，与 imageUrls 一一对应；旧帖子没有时为 null
+    @SerializedName("thumbnailUrls", alternate = ["thumbnail_urls"])
+    val thumbnailUrls: List<String>? = null,
+
     // 修复：添加 likes_count 映射 (这是点赞数不显示的关键)
     @SerializedName("likeCount", alternate = ["likesCount", "likes_count", "like_count"])
     val likeCount: Int = 0,
@@ -0,0 +1,7 @@
+package com.yychainsaw.qinglianapp.data.model.vo
+
+// 对方正在输入 / 停止输入
+data class TypingVO(
+    val userId: String,
+    val typing: Boolean
+)
@@ -113,6 +113,13 @@ interface ApiService {
         @Query("size") size: Int = 10
     ): ApiResponse<PageBean<PostVO>>
 
+    // 游标翻页，首页不传 cursor
+    @GET("community/feed/cursor")
+    suspend fun getFeedByCursor(
+        @Query("cursor") cursor: String? = null,
+        @Query("size") size: Int = 10
+    ): ApiResponse<CursorPageBean<PostVO>>
+
     @POST("community/posts/{postId}/like")
     suspend fun likePost(@Path("postId") postId: String): ApiResponse<Void>
 
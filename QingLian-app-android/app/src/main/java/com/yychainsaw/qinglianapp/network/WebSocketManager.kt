@@ -3,29 +3,46 @@ package com.yychainsaw.qinglianapp.network
 import android.annotation.SuppressLint
 import android.util.Log
 import com.google.gson.Gson
+import com.yychainsaw.qinglianapp.data.model.dto.MessageSendDTO
+import com.yychainsaw.qinglianapp.data.model.vo.BadgeVO
+import com.yychainsaw.qinglianapp.data.model.vo.MessageReceiptVO
 import com.yychainsaw.qinglianapp.data.model.vo.MessageVO
+import com.yychainsaw.qinglianapp.data.model.vo.TypingVO
 import io.reactivex.android.schedulers.AndroidSchedulers
 import io.reactivex.disposables.CompositeDisposable
 import io.reactivex.disposables.Disposable
 import io.reactivex.schedulers.Schedulers
+import kotlinx.coroutines.CompletableDeferred
 import kotlinx.coroutines.channels.BufferOverflow
 import kotlinx.coroutines.flow.MutableSharedFlow
 import kotlinx.coroutines.flow.asSharedFlow
+import kotlinx.coroutines.withTimeoutOrNull
 import ua.naiksoftware.stomp.Stomp
 import ua.naiksoftware.stomp.StompClient
 import ua.naiksoftware.stomp.dto.LifecycleEvent
 import ua.naiksoftware.stomp.dto.StompHeader
+import java.util.UUID
 import java.util.concurrent.ConcurrentHashMap
 
 object WebSocketManager {
     // 保持你的 URL 和 topic 路径不变 (根据日志，你的路径是用 . 分隔的)
     private const val WS_URL = "wss://42956d6f.r12.vip.cpolar.cn/ws/websocket"
     private const val SUBSCRIBE_DESTINATION = "/user/queue/messages"
+    private const val RECEIPT_DESTINATION = "/user/queue/receipts"
+    private const val BADGE_DESTINATION = "/user/queue/badges"
+    private const val TYPING_DESTINATION = "/user/queue/typing"
+    private const val READ_SEND_DESTINATION = "/app/chat.read"
+    private const val TYPING_SEND_DESTINATION = "/app/chat.typing"
+    private const val PRIVATE_SEND_DESTINATION = "/app/chat.private"
+    private const val GROUP_SEND_DESTINATION = "/app/chat.group"
+    private const val RECEIPT_TIMEOUT_MS = 10_000L
 
     private var stompClient: StompClient? = null
     private val gson = Gson()
     private val compositeDisposable = CompositeDisposable()
     private val groupSubscriptions = ConcurrentHashMap<Long, Disposable>()
+    // clientMsgId -> 等待中的回执
+    private val pendingReceipts = ConcurrentHashMap<String, CompletableDeferred<MessageReceiptVO>>()
 
     private val _messageFlow = MutableSharedFlow<MessageVO>(
         replay = 0,
@@ -34,6 +51,34 @@ object WebSocketManager {
     )
     val messageFlow = _messageFlow.asSharedFlow()
 
+    // 角标变化 (服务端已合并，最多 250ms 一帧)
+    private val _badgeFlow = MutableSharedFlow<BadgeVO>(
+        extraBufferCapacity = 10,
+        onBufferOverflow = BufferOverflow.DROP_OLDEST
+    )
+    val badgeFlow = _badgeFlow.asSharedFlow()
+
+    // 对方输入状态 (服务端已合并)
+    private val _typingFlow = MutableSharedFlow<TypingVO>(
+        extraBufferCapacity = 10,
+        onBufferOverflow = BufferOverflow.DROP_OLDEST
+    )
+    val typingFlow = _typingFlow.asSharedFlow()
+
+    // 服务端补发不完整 (sync=reset) 时发出，页面收到后重新拉取列表/历史
+    private val _resyncFlow = MutableSharedFlow<Unit>(
+        extraBufferCapacity = 1,
+        onBufferOverflow = BufferOverflow.DROP_OLDEST
+    )
+    val resyncFlow = _resyncFlow.asSharedFlow()
+
+    // 私聊推送的序号: 重连时通过 last-seq 告诉服务端只补发缺失的部分
+    @Volatile
+    private var lastSeq: Long = -1L
+    // 补发与实时推送可能交错到达，按 seq 去重
+    private val recentSeqs = LinkedHashSet<Long>()
+    private const val RECENT_SEQ_LIMIT = 500
+
     @SuppressLint("CheckResult")
     fun connect(token: String) {
         if (stompClient?.isConnected == true) return
@@ -43,7 +88,10 @@ object WebSocketManager {
         stompClient = client
         client.withClientHeartbeat(10000).withServerHeartbeat(10000)
 
-        val headers = listOf(StompHeader("Authorization", "Bearer $token"))
+        val headers = mutableListOf(StompHeader("Authorization", "Bearer $token"))
+        if (lastSeq >= 0) {
+            headers.add(StompHeader("last-seq", lastSeq.toString()))
+        }
 
         val lifecycleDisp = client.lifecycle()
             .subscribeOn(Schedulers.io())
@@ -53,6 +101,9 @@ object WebSocketManager {
                     LifecycleEvent.Type.OPENED -> {
                         Log.d("WebSocket", "连接成功")
                         subscribeToPrivateTopic(client)
+                        subscribeToReceipts(client)
+                        subscribeToBadges(client)
+                        subscribeToTyping(client)
                     }
                     LifecycleEvent.Type.ERROR -> Log.e("WebSocket", "连接错误", lifecycleEvent.exception)
                     LifecycleEvent.Type.CLOSED -> Log.d("WebSocket", "连接关闭")
@@ -69,6 +120,20 @@ object WebSocketManager {
             .subscribeOn(Schedulers.io())
             .observeOn(AndroidSchedulers.mainThread())
             .subscribe({ topicMessage ->
+                val seq = topicMessage.findHeader("seq")?.toLongOrNull()
+                when (topicMessage.findHeader("sync")) {
+                    "init" -> {
+                        seq?.let { lastSeq = it }
+                        return@subscribe
+                    }
+                    "reset" -> {
+                        seq?.let { lastSeq = it }
+                        recentSeqs.clear()
+                        _resyncFlow.tryEmit(Unit)
+                        return@subscribe
+                    }
+                }
+                if (seq != null && !markSeen(seq)) return@subscribe
                 try {
                     val msg = gson.fromJson(topicMessage.payload, MessageVO::class.java)
                     _messageFlow.tryEmit(msg)
@@ -79,6 +144,112 @@ object WebSocketManager {
         compositeDisposable.add(disp)
     }
 
+    @SuppressLint("CheckResult")
+    private fun subscribeToReceipts(client: StompClient) {
+        val disp = client.topic(RECEIPT_DESTINATION)
+            .subscribeOn(Schedulers.io())
+            .subscribe({ topicMessage ->
+                try {
+                    val receipt = gson.fromJson(topicMessage.payload, MessageReceiptVO::class.java)
+                    receipt.clientMsgId?.let { pendingReceipts.remove(it)?.complete(receipt) }
+                } catch (e: Exception) {
+                    Log.e("WebSocket", "解析回执失败", e)
+                }
+            }, { err -> Log.e("WebSocket", "回执订阅失败", err) })
+        compositeDisposable.add(disp)
+    }
+
+    @SuppressLint("CheckResult")
+    private fun subscribeToBadges(client: StompClient) {
+        val disp = client.topic(BADGE_DESTINATION)
+            .subscribeOn(Schedulers.io())
+            .observeOn(AndroidSchedulers.mainThread())
+            .subscribe({ topicMessage ->
+                try {
+                    _badgeFlow.tryEmit(gson.fromJson(topicMessage.payload, BadgeVO::class.java))
+                } catch (e: Exception) {
+                    Log.e("WebSocket", "解析角标失败", e)
+                }
+            }, { err -> Log.e("WebSocket", "角标订阅失败", err) })
+        compositeDisposable.add(disp)
+    }
+
+    @SuppressLint("CheckResult")
+    private fun subscribeToTyping(client: StompClient) {
+        val disp = client.topic(TYPING_DESTINATION)
+            .subscribeOn(Schedulers.io())
+            .observeOn(AndroidSchedulers.mainThread())
+            .subscribe({ topicMessage ->
+                try {
+                    _typingFlow.tryEmit(gson.fromJson(topicMessage.payload, TypingVO::class.java))
+                } catch (e: Exception) {
+                    Log.e("WebSocket", "解析输入状态失败", e)
+                }
+            }, { err -> Log.e("WebSocket", "输入状态订阅失败", err) })
+        compositeDisposable.add(disp)
+    }
+
+    /**
+     * 已读信号: 私聊传 peerId，群聊传 groupId。可以随收随发，服务端会按会话合并后再写库
+     * 未连接时返回 false，由调用方改走 HTTP 接口
+     */
+    fun sendReadReceipt(peerId: String?, groupId: Long?, lastMsgId: Long): Boolean {
+        val payload = mapOf("peerId" to peerId, "groupId" to groupId, "lastMsgId" to lastMsgId)
+        return sendSignal(READ_SEND_DESTINATION, gson.toJson(payload))
+    }
+
+    fun sendTyping(peerId: String, typing: Boolean): Boolean {
+        return sendSignal(TYPING_SEND_DESTINATION, gson.toJson(mapOf("peerId" to peerId, "typing" to typing)))
+    }
+
+    private fun sendSignal(destination: String, body: String): Boolean {
+        val client = stompClient
+        if (client == null || !client.isConnected) return false
+        val disp = client.send(destination, body)
+            .subscribeOn(Schedulers.io())
+            .subscribe({}, { err -> Log.e("WebSocket", "信号发送失败: $destination", err) })
+        compositeDisposable.add(disp)
+        return true
+    }
+
+    /**
+     * 通过已建立的 STOMP 连接发送消息并等待服务端回执
+     * 未连接时返回 null，由调用方改走 HTTP 接口；等待超时返回 TIMEOUT (消息可能已发出，不能直接重发)
+     */
+    suspend fun sendMessage(dto: MessageSendDTO): MessageReceiptVO? {
+        val client = stompClient
+        if (client == null || !client.isConnected) return null
+
+        val clientMsgId = dto.clientMsgId ?: UUID.randomUUID().toString()
+        val deferred = CompletableDeferred<MessageReceiptVO>()
+        pendingReceipts[clientMsgId] = deferred
+        val destination = if (dto.groupId != null) GROUP_SEND_DESTINATION else PRIVATE_SEND_DESTINATION
+        val disp = client.send(destination, gson.toJson(dto.copy(clientMsgId = clientMsgId)))
+            .subscribeOn(Schedulers.io())
+            .subscribe({}, { err ->
+                Log.e("WebSocket", "消息发送失败", err)
+                deferred.complete(MessageReceiptVO(clientMsgId, "FAILED", "连接异常"))
+            })
+        compositeDisposable.add(disp)
+
+        return try {
+            withTimeoutOrNull(RECEIPT_TIMEOUT_MS) { deferred.await() }
+                ?: MessageReceiptVO(clientMsgId, "TIMEOUT", "发送超时")
+        } finally {
+            pendingReceipts.remove(clientMsgId)
+        }
+    }
+
+    // 返回 false 表示这条已经收到过
+    private fun markSeen(seq: Long): Boolean {
+        if (!recentSeqs.add(seq)) return false
+        if (recentSeqs.size > RECENT_SEQ_LIMIT) {
+            recentSeqs.remove(recentSeqs.first())
+        }
+        if (seq > lastSeq) lastSeq = seq
+        return true
+    }
+
     @SuppressLint("CheckResult")
     fun joinGroup(groupId: Long) {
         if (stompClient == null || !stompClient!!.isConnected) return
@@ -11,6 +11,10 @@ import kotlinx.coroutines.launch
 
 class MainViewModel : ViewModel() {
 
+    companion object {
+        private const val BADGE_MESSAGES = "messages"
+    }
+
     private val _totalUnreadCount = MutableStateFlow(0L)
     val totalUnreadCount: StateFlow<Long> = _totalUnreadCount.asStateFlow()
 
@@ -18,7 +22,7 @@ class MainViewModel : ViewModel() {
         // 1. 初始化时：调用一次 HTTP 接口获取基准数据
         fetchInitialUnreadCount()
 
-        // 2. 监听 WebSocket：有新消息来，本地计数 +1
+        // 2. 监听 WebSocket 角标推送，不再轮询
         observeWebSocket()
     }
 
@@ -37,12 +41,21 @@ class MainViewModel : ViewModel() {
 
     private fun observeWebSocket() {
         viewModelScope.launch {
-            WebSocketManager.messageFlow.collect { message ->
-                // 收到新消息，未读数 +1
-                // (这里假设 WebSocket 推送过来的都是未读消息)
-                _totalUnreadCount.value += 1
+            WebSocketManager.badgeFlow.collect { badge ->
+                // 帧里带了服务端最新值就直接用，否则按变化量累加
+                val value = badge.values?.get(BADGE_MESSAGES)
+                if (value != null) {
+                    _totalUnreadCount.value = value
+                } else {
+                    val delta = badge.deltas?.get(BADGE_MESSAGES) ?: return@collect
+                    _totalUnreadCount.value = (_totalUnreadCount.value + delta).coerceAtLeast(0)
+                }
             }
         }
+        // 断线期间的角标变化已丢失，重新取一次
+        viewModelScope.launch {
+            WebSocketManager.resyncFlow.collect { fetchInitialUnreadCount() }
+        }
     }
 
     // 当用户查看完消息返回时，调用此方法校准未读数
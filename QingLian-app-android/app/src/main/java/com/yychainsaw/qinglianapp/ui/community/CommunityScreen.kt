@@ -20,6 +20,7 @@ import androidx.compose.foundation.layout.*
 import androidx.compose.foundation.lazy.LazyColumn
 import androidx.compose.foundation.lazy.LazyRow
 import androidx.compose.foundation.lazy.items
+import androidx.compose.foundation.lazy.rememberLazyListState
 import androidx.compose.foundation.shape.CircleShape
 import androidx.compose.foundation.shape.RoundedCornerShape
 import androidx.compose.material.icons.Icons
@@ -129,16 +130,27 @@ suspend fun saveImageToGallery(context: Context, imageUrl: String) {
 fun CommunityScreen(onPostCreate: () -> Unit) {
     var posts by remember { mutableStateOf<List<PostVO>>(emptyList()) }
     var isLoading by remember { mutableStateOf(true) }
+    // 游标翻页状态：nextCursor 为 null 且 hasMore 为 false 时不再请求
+    var nextCursor by remember { mutableStateOf<String?>(null) }
+    var hasMore by remember { mutableStateOf(true) }
+    var isLoadingMore by remember { mutableStateOf(false) }
     // 新增状态：当前正在查看的大图 URL
     var viewingImageUrl by remember { mutableStateOf<String?>(null) }
 
     val context = LocalContext.current
+    val listState = rememberLazyListState()
 
-    LaunchedEffect(Unit) {
+    suspend fun loadNextPage() {
+        if (isLoadingMore || !hasMore) return
+        isLoadingMore = true
         try {
-            val response = RetrofitClient.apiService.getFeed()
+            val response = RetrofitClient.apiService.getFeedByCursor(cursor = nextCursor)
             if (response.isSuccess() && response.data != null) {
-                posts = response.data.items
+                // 按 postId 去重，防止重复请求导致同一条帖子出现两次
+                val known = posts.map { it.postId }.toHashSet()
+                posts = posts + response.data.items.filter { it.postId !in known }
+                nextCursor = response.data.nextCursor
+                hasMore = response.data.hasMore && response.data.nextCursor != null
             } else {
                 Toast.makeText(context, "加载动态失败: ${response.message}", Toast.LENGTH_SHORT).show()
             }
@@ -146,10 +158,28 @@ fun CommunityScreen(onPostCreate: () -> Unit) {
             e.printStackTrace()
             Toast.makeText(context, "网络请求异常", Toast.LENGTH_SHORT).show()
         } finally {
+            isLoadingMore = false
             isLoading = false
         }
     }
 
+    LaunchedEffect(Unit) {
+        loadNextPage()
+    }
+
+    // 滑到倒数第 3 条时预加载下一页
+    val shouldLoadMore by remember {
+        derivedStateOf {
+            val lastVisible = listState.layoutInfo.visibleItemsInfo.lastOrNull()?.index ?: 0
+            lastVisible >= listState.layoutInfo.totalItemsCount - 3
+        }
+    }
+    LaunchedEffect(shouldLoadMore, posts.size) {
+        if (shouldLoadMore && posts.isNotEmpty()) {
+            loadNextPage()
+        }
+    }
+
     Scaffold(
         topBar = {
             Surface(
@@ -191,14 +221,27 @@ fun CommunityScreen(onPostCreate: () -> Unit) {
             }
         } else {
             LazyColumn(
+                state = listState,
                 contentPadding = PaddingValues(bottom = 80.dp),
                 modifier = Modifier.padding(padding)
             ) {
-                items(posts) { post ->
+                items(posts, key = { it.postId }) { post ->
                     // 传递点击事件
                     CommunityCard(post, onImageClick = { url -> viewingImageUrl = url })
                     Spacer(modifier = Modifier.height(8.dp))
                 }
+                if (isLoadingMore) {
+                    item {
+                        Box(
+                            modifier = Modifier
+                                .fillMaxWidth()
+                                .padding(16.dp),
+                            contentAlignment = Alignment.Center
+                        ) {
+                            CircularProgressIndicator(color = QingLianYellow, modifier = Modifier.size(24.dp))
+                        }
+                    }
+                }
             }
         }
     }
@@ -260,7 +303,7 @@ fun CommunityCard(post: PostVO, onImageClick: (String) -> Unit) {
 
             if (!post.imageUrls.isNullOrEmpty()) {
                 // 传递点击事件
-                PostImageGrid(images = post.imageUrls, onImageClick = onImageClick)
+                PostImageGrid(images = post.imageUrls, thumbnails = post.thumbnailUrls, onImageClick = onImageClick)
                 Spacer(modifier = Modifier.height(16.dp))
             }
 
@@ -289,12 +332,14 @@ fun CommunityCard(post: PostVO, onImageClick: (String) -> Unit) {
 }
 
 @Composable
-fun PostImageGrid(images: List<String>, onImageClick: (String) -> Unit) {
+fun PostImageGrid(images: List<String>, thumbnails: List<String>?, onImageClick: (String) -> Unit) {
     val imageCount = images.size
+    // 列表中加载缩略图，点击后全屏查看原图
+    val displayUrls = images.mapIndexed { index, url -> thumbnails?.getOrNull(index) ?: url }
 
     if (imageCount == 1) {
         AsyncImage(
-            model = resolveImageUrl(images[0]),
+            model = resolveImageUrl(displayUrls[0]),
             contentDescription = "Post Image",
             contentScale = ContentScale.Crop,
             modifier = Modifier
@@ -308,9 +353,10 @@ fun PostImageGrid(images: List<String>, onImageClick: (String) -> Unit) {
             horizontalArrangement = Arrangement.spacedBy(8.dp),
             modifier = Modifier.fillMaxWidth()
         ) {
-            items(images) { imageUrl ->
+            items(images.indices.toList()) { index ->
+                val imageUrl = images[index]
                 AsyncImage(
-                    model = resolveImageUrl(imageUrl),
+                    model = resolveImageUrl(displayUrls[index]),
                     contentDescription = "Post Image",
                     contentScale = ContentScale.Crop,
                     modifier = Modifier
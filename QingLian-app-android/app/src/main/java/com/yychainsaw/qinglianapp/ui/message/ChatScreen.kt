@@ -37,6 +37,7 @@ import com.yychainsaw.qinglianapp.network.WebSocketManager
 import com.yychainsaw.qinglianapp.ui.community.resolveImageUrl
 import com.yychainsaw.qinglianapp.ui.theme.QingLianYellow
 import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.delay
 import kotlinx.coroutines.launch
 import kotlinx.coroutines.withContext
 import okhttp3.MediaType.Companion.toMediaTypeOrNull
@@ -94,6 +95,22 @@ fun ChatScreen(
     var currentUserId by remember { mutableStateOf("") }
     var currentUserAvatar by remember { mutableStateOf<String?>(null) }
     var isFriend by remember { mutableStateOf(isGroupChat) }
+    // 对方最近一次 "正在输入" 的时间，0 表示不在输入
+    var peerTypingAt by remember { mutableStateOf(0L) }
+    // 自己上次发出 "正在输入" 的时间，持续输入时每 2 秒续发一次
+    var lastTypingSentAt by remember { mutableStateOf(0L) }
+
+    fun notifyTyping(typing: Boolean) {
+        if (isGroupChat) return
+        val now = System.currentTimeMillis()
+        if (typing) {
+            if (now - lastTypingSentAt < 2000) return
+            if (WebSocketManager.sendTyping(realChatId, true)) lastTypingSentAt = now
+        } else if (lastTypingSentAt > 0) {
+            WebSocketManager.sendTyping(realChatId, false)
+            lastTypingSentAt = 0L
+        }
+    }
 
     // 定义添加好友的函数
     fun addFriend() {
@@ -120,24 +137,34 @@ fun ChatScreen(
                     content = content,
                     type = msgType
                 )
-                val res = RetrofitClient.apiService.sendMessage(dto)
-                if (res.isSuccess()) {
-                    val sentMsg = res.data!!
-                    if (rawMessages.none { it.id == sentMsg.id }) {
-                        val newUiMsg = UiMessage(
-                            id = sentMsg.id,
-                            senderId = sentMsg.senderId,
-                            content = sentMsg.content,
-                            sentAt = sentMsg.sentAt,
-                            senderAvatar = null,
-                            senderName = sentMsg.senderName,
-                            type = msgType // 记录类型
-                        )
-                        rawMessages = rawMessages + newUiMsg
-                        listState.scrollToItem(0)
+                // 优先走已建立的 STOMP 连接，未连接时退回 HTTP 接口
+                val receipt = WebSocketManager.sendMessage(dto)
+                val sentMsg = if (receipt != null) {
+                    if (receipt.status != "OK" || receipt.message == null) {
+                        Toast.makeText(context, "发送失败: ${receipt.error}", Toast.LENGTH_SHORT).show()
+                        return@launch
                     }
+                    receipt.message
                 } else {
-                    Toast.makeText(context, "发送失败: ${res.message}", Toast.LENGTH_SHORT).show()
+                    val res = RetrofitClient.apiService.sendMessage(dto)
+                    if (!res.isSuccess()) {
+                        Toast.makeText(context, "发送失败: ${res.message}", Toast.LENGTH_SHORT).show()
+                        return@launch
+                    }
+                    res.data!!
+                }
+                if (rawMessages.none { it.id == sentMsg.id }) {
+                    val newUiMsg = UiMessage(
+                        id = sentMsg.id,
+                        senderId = sentMsg.senderId,
+                        content = sentMsg.content,
+                        sentAt = sentMsg.sentAt,
+                        senderAvatar = null,
+                        senderName = sentMsg.senderName,
+                        type = msgType // 记录类型
+                    )
+                    rawMessages = rawMessages + newUiMsg
+                    listState.scrollToItem(0)
                 }
             } catch (e: Exception) {
                 e.printStackTrace()
@@ -235,6 +262,15 @@ fun ChatScreen(
         }
     }
 
+    // 断线期间的消息无法补发时，重新加载历史
+    LaunchedEffect(Unit) {
+        WebSocketManager.resyncFlow.collect {
+            loadHistory(realChatId, isGroupChat) { msgs ->
+                rawMessages = msgs
+            }
+        }
+    }
+
     // --- WebSocket 监听逻辑 ---
     LaunchedEffect(Unit) {
         if (isGroupChat) {
@@ -268,13 +304,32 @@ fun ChatScreen(
                     if (displayMessages.isNotEmpty()) listState.scrollToItem(0)
                 }
 
-                if (!isGroupChat) {
+                // 已读信号走 STOMP，服务端合并后统一写水位；未连接时退回 HTTP
+                if (isGroupChat) {
+                    WebSocketManager.sendReadReceipt(null, realChatId.toLong(), msgVO.id)
+                } else if (!WebSocketManager.sendReadReceipt(realChatId, null, msgVO.id)) {
                     try { RetrofitClient.apiService.markAsRead(realChatId) } catch (_: Exception) {}
                 }
             }
         }
     }
 
+    // 对方正在输入: 收到后显示，超过 6 秒没有续推自动隐藏
+    LaunchedEffect(Unit) {
+        if (isGroupChat) return@LaunchedEffect
+        WebSocketManager.typingFlow.collect { typing ->
+            if (typing.userId == realChatId) {
+                peerTypingAt = if (typing.typing) System.currentTimeMillis() else 0L
+            }
+        }
+    }
+    LaunchedEffect(peerTypingAt) {
+        if (peerTypingAt > 0) {
+            delay(6000)
+            peerTypingAt = 0L
+        }
+    }
+
     Scaffold(
         topBar = {
             Column {
@@ -284,6 +339,8 @@ fun ChatScreen(
                             Text(text = friendName, fontWeight = FontWeight.Bold)
                             if (isGroupChat) {
                                 Text(text = "群成员: ${groupMembers.size}人", style = MaterialTheme.typography.bodySmall)
+                            } else if (peerTypingAt > 0) {
+                                Text(text = "对方正在输入...", style = MaterialTheme.typography.bodySmall, color = Color.Gray)
                             }
                         }
                     },
@@ -330,7 +387,10 @@ fun ChatScreen(
                     }
                     OutlinedTextField(
                         value = inputText,
-                        onValueChange = { inputText = it },
+                        onValueChange = {
+                            inputText = it
+                            notifyTyping(it.isNotEmpty())
+                        },
                         modifier = Modifier.weight(1f),
                         placeholder = { Text("发送消息...") },
                         shape = RoundedCornerShape(24.dp),
@@ -344,6 +404,7 @@ fun ChatScreen(
                             if (inputText.isNotBlank()) {
                                 val contentToSend = inputText
                                 inputText = "" // 立即清空输入框，提升体验
+                                notifyTyping(false)
                                 performSendMessage(contentToSend, "TEXT")
                             }
                         }
@@ -128,6 +128,10 @@ fun MessageListScreen(
         WebSocketManager.messageFlow.collect { loadAllData() }
     }
 
+    LaunchedEffect(Unit) {
+        WebSocketManager.resyncFlow.collect { loadAllData() }
+    }
+
     // ... (Scaffold 及后续 UI 代码保持不变) ...
     Scaffold(
         topBar = {
@@ -270,14 +274,29 @@ fun FriendItemView(friend: FriendVO, onClick: () -> Unit) {
             .padding(horizontal = 16.dp, vertical = 12.dp),
         verticalAlignment = Alignment.CenterVertically
     ) {
-        Box(
-            modifier = Modifier.size(50.dp).clip(CircleShape).background(QingLianBlue.copy(alpha = 0.1f)),
-            contentAlignment = Alignment.Center
-        ) {
-            if (friend.avatarUrl.isNullOrBlank()) {
-                Icon(Icons.Default.Person, contentDescription = null, tint = Color.Gray)
-            } else {
-                AsyncImage(model = resolveImageUrl(friend.avatarUrl), contentDescription = null, contentScale = ContentScale.Crop, modifier = Modifier.fillMaxSize())
+        Box(modifier = Modifier.size(50.dp)) {
+            Box(
+                modifier = Modifier.fillMaxSize().clip(CircleShape).background(QingLianBlue.copy(alpha = 0.1f)),
+                contentAlignment = Alignment.Center
+            ) {
+                if (friend.avatarUrl.isNullOrBlank()) {
+                    Icon(Icons.Default.Person, contentDescription = null, tint = Color.Gray)
+                } else {
+                    AsyncImage(model = resolveImageUrl(friend.avatarUrl), contentDescription = null, contentScale = ContentScale.Crop, modifier = Modifier.fillMaxSize())
+                }
+            }
+            // 在线小绿点
+            if (friend.online) {
+                Box(
+                    modifier = Modifier
+                        .size(12.dp)
+                        .align(Alignment.BottomEnd)
+                        .clip(CircleShape)
+                        .background(Color.White)
+                        .padding(2.dp)
+                        .clip(CircleShape)
+                        .background(Color(0xFF4CAF50))
+                )
             }
         }
         Spacer(modifier = Modifier.width(16.dp))
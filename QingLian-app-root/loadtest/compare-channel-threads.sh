@@ -0,0 +1,60 @@
+#!/usr/bin/env bash
+# 对比 STOMP 入站/出站通道使用平台线程与虚拟线程时的回执/投递延迟
+#
+# 前置条件: JDK 21+ (虚拟线程开关在 17 上会被忽略)、k6、可用的 PostgreSQL 与 Redis，
+# 数据源等配置通过环境变量或 SPRING_APPLICATION_JSON 传入，与平时启动方式相同。
+#
+#   mvn -q -DskipTests package
+#   VUS=500 DURATION=120s ./loadtest/compare-channel-threads.sh
+#
+# 每种模式各启动一次应用并压测，结果写入 loadtest/results/{platform,virtual}.json，最后打印对比。
+set -euo pipefail
+
+cd "$(dirname "$0")/.."
+JAR=${JAR:-$(ls target/*.jar | grep -v original | head -n 1)}
+PORT=${PORT:-8080}
+VUS=${VUS:-200}
+DURATION=${DURATION:-60s}
+RESULTS=loadtest/results
+mkdir -p "$RESULTS"
+
+run_mode() {
+    local mode=$1 virtual=$2
+    echo ">>> $mode (spring.threads.virtual.enabled=$virtual)"
+    java -jar "$JAR" --server.port="$PORT" \
+        --spring.threads.virtual.enabled="$virtual" \
+        --qinglian.login-rate-limit.ip-capacity=100000 \
+        --qinglian.login-rate-limit.ip-refill-per-minute=100000 \
+        > "$RESULTS/$mode.log" 2>&1 &
+    local pid=$!
+    trap "kill $pid 2>/dev/null || true" EXIT
+
+    for _ in $(seq 1 60); do
+        curl -s -o /dev/null "http://localhost:$PORT/ws/info" && break
+        sleep 1
+    done
+
+    k6 run -e BASE_URL="http://localhost:$PORT" -e VUS="$VUS" -e DURATION="$DURATION" -e MODE="$mode" \
+        --summary-export "$RESULTS/$mode.json" loadtest/stomp-chat.js || true
+
+    kill "$pid"
+    wait "$pid" 2>/dev/null || true
+    trap - EXIT
+}
+
+run_mode platform false
+run_mode virtual true
+
+echo
+printf "%-10s %14s %14s %14s %14s %10s\n" mode receipt_p50 receipt_p95 delivery_p50 delivery_p95 failed
+for mode in platform virtual; do
+    python3 - "$RESULTS/$mode.json" "$mode" <<'PY'
+import json, sys
+m = json.load(open(sys.argv[1]))["metrics"]
+r = m.get("stomp_receipt_ms", {})
+d = m.get("stomp_delivery_ms", {})
+f = m.get("stomp_receipt_failed", {}).get("count", 0)
+print("%-10s %12.1fms %12.1fms %12.1fms %12.1fms %10d" % (
+    sys.argv[2], r.get("med", 0), r.get("p(95)", 0), d.get("med", 0), d.get("p(95)", 0), f))
+PY
+done
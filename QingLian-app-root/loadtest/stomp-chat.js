@@ -0,0 +1,152 @@
+// STOMP 私聊压测 (k6)
+//
+// 每个 VU 以一个测试用户连接 /ws (SockJS 端点的原生 WebSocket 传输 /ws/websocket)，
+// 通过 /app/chat.private 给配对用户发消息，统计:
+//   stomp_receipt_ms   发送到收到 /user/queue/receipts 回执的耗时 (入站通道 + 落库 + 出站通道)
+//   stomp_delivery_ms  发送到对方在 /user/queue/messages 收到的耗时
+//   stomp_receipt_failed / stomp_connect_failed
+//
+// 用法见 compare-channel-threads.sh，也可以单独运行:
+//   k6 run -e BASE_URL=http://localhost:8080 -e VUS=200 -e DURATION=60s -e MODE=virtual loadtest/stomp-chat.js
+//
+// setup 阶段会注册 VUS 个用户 (前缀 lt{时间戳}_)，压测环境需调高登录限流:
+//   --qinglian.login-rate-limit.ip-capacity=100000 --qinglian.login-rate-limit.ip-refill-per-minute=100000
+
+import http from 'k6/http';
+import ws from 'k6/ws';
+import { check } from 'k6';
+import { Counter, Trend } from 'k6/metrics';
+
+const BASE_URL = __ENV.BASE_URL || 'http://localhost:8080';
+const WS_URL = BASE_URL.replace(/^http/, 'ws') + '/ws/websocket';
+const VUS = parseInt(__ENV.VUS || '200');
+const DURATION = __ENV.DURATION || '60s';
+const SEND_INTERVAL_MS = parseInt(__ENV.SEND_INTERVAL_MS || '200');
+const PASSWORD = 'loadtest123';
+
+const receiptTime = new Trend('stomp_receipt_ms', true);
+const deliveryTime = new Trend('stomp_delivery_ms', true);
+const receiptFailed = new Counter('stomp_receipt_failed');
+const connectFailed = new Counter('stomp_connect_failed');
+
+export const options = {
+    setupTimeout: '10m',
+    scenarios: {
+        chat: {
+            executor: 'constant-vus',
+            vus: VUS,
+            duration: DURATION,
+            tags: { mode: __ENV.MODE || 'unknown' },
+        },
+    },
+    thresholds: {
+        stomp_receipt_ms: ['p(95)<1000'],
+        stomp_connect_failed: ['count==0'],
+    },
+};
+
+function frame(command, headers, body) {
+    let out = command + '\n';
+    for (const key in headers) {
+        out += key + ':' + headers[key] + '\n';
+    }
+    return out + '\n' + (body || '') + '\0';
+}
+
+function parseFrame(data) {
+    const text = data.replace(/\0$/, '');
+    const split = text.indexOf('\n\n');
+    const head = (split < 0 ? text : text.substring(0, split)).split('\n');
+    const headers = {};
+    for (let i = 1; i < head.length; i++) {
+        const idx = head[i].indexOf(':');
+        if (idx > 0) {
+            headers[head[i].substring(0, idx)] = head[i].substring(idx + 1);
+        }
+    }
+    return { command: head[0], headers, body: split < 0 ? '' : text.substring(split + 2) };
+}
+
+function post(path, body, token) {
+    const headers = { 'Content-Type': 'application/json' };
+    if (token) {
+        headers.Authorization = 'Bearer ' + token;
+    }
+    return http.post(BASE_URL + path, JSON.stringify(body), { headers });
+}
+
+export function setup() {
+    const prefix = 'lt' + Date.now() + '_';
+    const users = [];
+    for (let i = 0; i < VUS; i++) {
+        const username = prefix + i;
+        post('/auth/register', { username, password: PASSWORD, nickname: username });
+        const res = post('/auth/login', { username, password: PASSWORD });
+        const data = res.json('data');
+        if (!data || !data.token) {
+            throw new Error('登录失败: ' + username + ' ' + res.body);
+        }
+        users.push({ token: data.token, userId: data.userInfo.userId });
+    }
+    return { users };
+}
+
+export default function (data) {
+    const me = data.users[(__VU - 1) % data.users.length];
+    // 相邻两个 VU 互发: 0<->1, 2<->3 ...
+    const peer = data.users[((__VU - 1) ^ 1) % data.users.length];
+    const sentAt = {};
+    let seq = 0;
+
+    const res = ws.connect(WS_URL, {}, (socket) => {
+        socket.on('open', () => {
+            socket.send(frame('CONNECT', {
+                'accept-version': '1.2',
+                'heart-beat': '10000,10000',
+                Authorization: 'Bearer ' + me.token,
+            }));
+        });
+
+        socket.on('message', (raw) => {
+            if (raw === '\n') {
+                return; // 心跳
+            }
+            const f = parseFrame(raw);
+            if (f.command === 'CONNECTED') {
+                socket.send(frame('SUBSCRIBE', { id: 'receipts', destination: '/user/queue/receipts' }));
+                socket.send(frame('SUBSCRIBE', { id: 'messages', destination: '/user/queue/messages' }));
+                socket.setInterval(() => {
+                    const clientMsgId = __VU + '-' + (seq++);
+                    sentAt[clientMsgId] = Date.now();
+                    socket.send(frame('SEND', { destination: '/app/chat.private', 'content-type': 'application/json' },
+                        JSON.stringify({ receiverId: peer.userId, content: 'lt ' + clientMsgId + ' ' + Date.now(), type: 'TEXT', clientMsgId })));
+                }, SEND_INTERVAL_MS);
+            } else if (f.command === 'MESSAGE' && f.headers.subscription === 'receipts') {
+                const receipt = JSON.parse(f.body);
+                const start = sentAt[receipt.clientMsgId];
+                if (start) {
+                    delete sentAt[receipt.clientMsgId];
+                    if (receipt.status === 'OK') {
+                        receiptTime.add(Date.now() - start);
+                    } else {
+                        receiptFailed.add(1);
+                    }
+                }
+            } else if (f.command === 'MESSAGE' && f.headers.subscription === 'messages') {
+                // 内容末尾是对方发送时的时间戳，压测机单机运行时可直接比较
+                const match = /^lt \S+ (\d+)$/.exec(JSON.parse(f.body).content || '');
+                if (match) {
+                    deliveryTime.add(Date.now() - parseInt(match[1]));
+                }
+            } else if (f.command === 'ERROR') {
+                connectFailed.add(1);
+                socket.close();
+            }
+        });
+
+        // 在场景结束前主动断开，避免被 k6 强制中断时计为失败
+        socket.setTimeout(() => socket.close(), 30000);
+    });
+
+    check(res, { 'websocket upgraded': (r) => r && r.status === 101 }) || connectFailed.add(1);
+}
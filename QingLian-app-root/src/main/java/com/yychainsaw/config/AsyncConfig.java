@@ -0,0 +1,36 @@
+package com.yychainsaw.config;
+
+import com.yychainsaw.utils.ThreadLocalUtil;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.TaskDecorator;
+import org.springframework.scheduling.annotation.EnableAsync;
+
+/**
+ * 异步执行配置
+ *
+ * 虚拟线程模式: spring.threads.virtual.enabled=true (JDK 21+ 运行时生效，JDK 17 下自动忽略)
+ * 打开后 Tomcat 请求线程、applicationTaskExecutor、@Scheduled 调度器以及 WebSocketConfig 中的
+ * STOMP 入站/出站通道都改用虚拟线程。请求上下文仍放在 ThreadLocalUtil 中: 每个请求独占一个虚拟线程，
+ * 拦截器 afterCompletion 负责清理，跨线程时由下面的 TaskDecorator 传递。
+ *
+ * 已知的钉住 (pinning) 热点，JDK 21~23 下 synchronized 内阻塞会占住载体线程
+ * (可用 -Djdk.tracePinnedThreads=short 排查，JDK 24 起 synchronized 不再钉住):
+ * 1. OSS 上传: OSS SDK 基于 Apache HttpClient 4，连接池取连接和发送都在 synchronized 内 (上传本身在 UploadServiceImpl 的平台线程池中)
+ * 2. 数据库连接: 并发上限仍是 Hikari 连接池大小，虚拟线程只是排队等待连接，需要同时关注 connectionTimeout
+ * Lettuce (Redis) 基于 Netty 非阻塞，PostgreSQL 驱动 42.6+ 已改用 ReentrantLock，不受影响。
+ * MessagePipelineService 的落库线程是常驻循环，保留平台线程。
+ */
+@Configuration
+@EnableAsync
+public class AsyncConfig {
+
+    /**
+     * Spring Boot 自动配置的 applicationTaskExecutor (平台线程池或虚拟线程) 都会套上这个装饰器，
+     * 让 @Async 方法拿到提交线程的登录用户
+     */
+    @Bean
+    public TaskDecorator loginUserTaskDecorator() {
+        return ThreadLocalUtil::wrap;
+    }
+}
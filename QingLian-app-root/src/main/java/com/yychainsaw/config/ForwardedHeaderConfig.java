@@ -0,0 +1,32 @@
+package com.yychainsaw.config;
+
+import com.yychainsaw.pojo.AuthProperties;
+import org.apache.catalina.valves.RemoteIpValve;
+import org.springframework.boot.web.embedded.tomcat.TomcatServletWebServerFactory;
+import org.springframework.boot.web.server.WebServerFactoryCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.util.StringUtils;
+
+/**
+ * 反向代理转发头
+ * 只有直连地址匹配 qinglian.auth.trusted-proxies 时才用 X-Forwarded-For / X-Forwarded-Proto 改写客户端地址，
+ * 否则客户端可以伪造转发头绕过按 IP 的登录限流。未配置时不采信任何转发头。
+ */
+@Configuration
+public class ForwardedHeaderConfig {
+
+    @Bean
+    public WebServerFactoryCustomizer<TomcatServletWebServerFactory> remoteIpCustomizer(AuthProperties authProperties) {
+        return factory -> {
+            if (!StringUtils.hasText(authProperties.getTrustedProxies())) {
+                return;
+            }
+            RemoteIpValve valve = new RemoteIpValve();
+            valve.setRemoteIpHeader("X-Forwarded-For");
+            valve.setProtocolHeader("X-Forwarded-Proto");
+            valve.setInternalProxies(authProperties.getTrustedProxies());
+            factory.addEngineValves(valve);
+        };
+    }
+}
@@ -1,20 +1,27 @@
 package com.yychainsaw.config;
 
 import com.yychainsaw.interceptors.LoginInterceptor;
+import com.yychainsaw.pojo.FileStorageProperties;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistration;
 import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.ResourceHandlerRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 
+import java.nio.file.Paths;
+
 @Configuration
 public class WebConfig implements WebMvcConfigurer {
 
     @Autowired
     private LoginInterceptor loginInterceptor;
+    @Autowired
+    private FileStorageProperties fileStorageProperties;
 
     @Override
     public void addInterceptors(InterceptorRegistry registry) {
-        registry.addInterceptor(loginInterceptor)
+        InterceptorRegistration registration = registry.addInterceptor(loginInterceptor)
                 .excludePathPatterns(
                         "/auth/login",
                         "/auth/register",
@@ -24,5 +31,22 @@ public class WebConfig implements WebMvcConfigurer {
                         "/movements/analytics",
                         "/movements/hardcore"
                 );
+        // 只有本地存储才由本服务提供文件和直传地址，OSS 模式下这些路径仍需登录
+        if ("local".equalsIgnoreCase(fileStorageProperties.getType())) {
+            registration.excludePathPatterns(
+                    fileStorageProperties.getLocalUrlPrefix() + "/**",
+                    "/upload/direct/**" // 本地直传由 URL 签名校验
+            );
+        }
+    }
+
+    // 本地存储模式下直接由 Spring 提供上传目录中的文件
+    @Override
+    public void addResourceHandlers(ResourceHandlerRegistry registry) {
+        if ("local".equalsIgnoreCase(fileStorageProperties.getType())) {
+            String location = Paths.get(fileStorageProperties.getLocalDir()).toAbsolutePath().toUri().toString();
+            registry.addResourceHandler(fileStorageProperties.getLocalUrlPrefix() + "/**")
+                    .addResourceLocations(location.endsWith("/") ? location : location + "/");
+        }
     }
 }
@@ -1,28 +1,76 @@
 package com.yychainsaw.config;
 
+import com.auth0.jwt.interfaces.DecodedJWT;
+import com.yychainsaw.pojo.LoginUser;
+import com.yychainsaw.pojo.PresenceProperties;
+import com.yychainsaw.service.MessageDeliveryService;
+import com.yychainsaw.service.PresenceService;
+import com.yychainsaw.service.TokenRevocationService;
 import com.yychainsaw.utils.JwtUtil;
+import com.yychainsaw.utils.ThreadLocalUtil;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
 import org.springframework.messaging.Message;
 import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHandler;
+import org.springframework.messaging.MessagingException;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.annotation.support.SimpAnnotationMethodMessageHandler;
 import org.springframework.messaging.simp.config.ChannelRegistration;
 import org.springframework.messaging.simp.config.MessageBrokerRegistry;
 import org.springframework.messaging.simp.stomp.StompCommand;
 import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.simp.user.UserDestinationMessageHandler;
 import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.ExecutorChannelInterceptor;
 import org.springframework.messaging.support.MessageHeaderAccessor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
 import org.springframework.web.socket.config.annotation.EnableWebSocketMessageBroker;
 import org.springframework.web.socket.config.annotation.StompEndpointRegistry;
 import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerConfigurer;
 
 import java.security.Principal;
 import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Executor;
 
 @Configuration
 @EnableWebSocketMessageBroker
 public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
 
+    // 客户端 CONNECT 时带上的最后收到的消息序号
+    private static final String LAST_SEQ_HEADER = "last-seq";
+    private static final String MESSAGES_SUBSCRIPTION = "/user/queue/messages";
+    private static final String LOGIN_USER_ATTR = "loginUser";
+
+    @Autowired
+    private TokenRevocationService tokenRevocationService;
+    // SimpMessagingTemplate 由本配置参与创建，延迟注入避免循环依赖
+    @Lazy
+    @Autowired
+    private MessageDeliveryService messageDeliveryService;
+    @Autowired
+    private PresenceService presenceService;
+    @Autowired
+    private PresenceProperties presenceProperties;
+
+    // SimpleBroker 收发 STOMP 心跳用，断线但没有 DISCONNECT 的会话会被心跳超时关闭
+    private ThreadPoolTaskScheduler heartbeatScheduler;
+
+    // 与 Tomcat / applicationTaskExecutor 共用同一个开关，需 JDK 21+ 才生效
+    @Value("${spring.threads.virtual.enabled:false}")
+    private boolean virtualThreadsEnabled;
+
     @Override
     public void registerStompEndpoints(StompEndpointRegistry registry) {
+        if (useVirtualThreads()) {
+            // 入站帧各自在虚拟线程上处理时，同一会话连续发送的消息可能乱序落库，按会话保序
+            registry.setPreserveReceiveOrder(true);
+        }
         registry.addEndpoint("/ws")
                 .setAllowedOriginPatterns("*")
                 .withSockJS();
@@ -30,50 +78,160 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
 
     @Override
     public void configureMessageBroker(MessageBrokerRegistry registry) {
-        registry.enableSimpleBroker("/topic", "/queue");
+        if (useVirtualThreads()) {
+            // 每条消息一个虚拟线程时，同一会话的推送可能乱序，由 broker 按会话保序
+            registry.setPreservePublishOrder(true);
+        }
+        // SimpleBroker 只管本机会话，多节点时由 MessageDeliveryService 经 Redis 在节点间转发
+        heartbeatScheduler = new ThreadPoolTaskScheduler();
+        heartbeatScheduler.setPoolSize(1);
+        heartbeatScheduler.setThreadNamePrefix("ws-heartbeat-");
+        heartbeatScheduler.initialize();
+        registry.enableSimpleBroker("/topic", "/queue")
+                .setHeartbeatValue(new long[]{presenceProperties.getHeartbeatMs(), presenceProperties.getHeartbeatMs()})
+                .setTaskScheduler(heartbeatScheduler);
         registry.setApplicationDestinationPrefixes("/app");
         registry.setUserDestinationPrefix("/user");
     }
 
     @Override
     public void configureClientInboundChannel(ChannelRegistration registration) {
+        if (useVirtualThreads()) {
+            registration.executor(virtualThreadExecutor("stomp-inbound-"));
+        }
         registration.interceptors(new ChannelInterceptor() {
             @Override
             public Message<?> preSend(Message<?> message, MessageChannel channel) {
                 StompHeaderAccessor accessor = MessageHeaderAccessor.getAccessor(message, StompHeaderAccessor.class);
 
-                if (StompCommand.CONNECT.equals(accessor.getCommand())) {
-                    String authHeader = accessor.getFirstNativeHeader("Authorization");
-
-                    if (authHeader != null && authHeader.startsWith("Bearer ")) {
-                        String token = authHeader.substring(7);
-                        try {
-                            Map<String, Object> map = JwtUtil.parseToken(token);
-
-
-                            String id = (String) map.get("id");
-
+                // 任意入站帧 (包括心跳) 都说明会话仍然存活
+                if (accessor.getSessionId() != null) {
+                    presenceService.touch(accessor.getSessionId());
+                }
 
-                            if (id != null) {
-                                final String finalPrincipalName = id;
-                                Principal user = new Principal() {
-                                    @Override
-                                    public String getName() {
-                                        return finalPrincipalName; // 返回 ID
-                                    }
-                                };
-                                accessor.setUser(user);
-                                System.out.println("WebSocket 拦截器: 用户已认证 (ID) -> " + finalPrincipalName);
-                            }
-                            // =============================================
+                if (StompCommand.CONNECT.equals(accessor.getCommand())) {
+                    // 在 preSend 中抛出 MessagingException，Spring 会回 ERROR 帧并关闭会话，未认证的连接不能再订阅任何目的地
+                    DecodedJWT jwt = authenticate(accessor.getFirstNativeHeader("Authorization"));
+                    Map<String, Object> map = jwt.getClaim("claims").asMap();
+                    String id = map == null ? null : (String) map.get("id");
+                    if (id == null) {
+                        throw new MessagingException("token 缺少用户信息");
+                    }
 
-                        } catch (Exception e) {
-                            System.out.println("WebSocket Token 验证失败: " + e.getMessage());
+                    final String finalPrincipalName = id;
+                    Principal user = new Principal() {
+                        @Override
+                        public String getName() {
+                            return finalPrincipalName; // 返回 ID
                         }
+                    };
+                    accessor.setUser(user);
+                    System.out.println("WebSocket 拦截器: 用户已认证 (ID) -> " + finalPrincipalName);
+                    rememberLastSeq(accessor);
+                    rememberLoginUser(accessor, jwt, map);
+                }
+                return message;
+            }
+        }, new ExecutorChannelInterceptor() {
+            @Override
+            public Message<?> beforeHandle(Message<?> message, MessageChannel channel, MessageHandler handler) {
+                // @MessageMapping 方法与 HTTP 接口一样通过 ThreadLocalUtil 取当前用户
+                if (handler instanceof SimpAnnotationMethodMessageHandler) {
+                    Map<String, Object> attributes = SimpMessageHeaderAccessor.getSessionAttributes(message.getHeaders());
+                    if (attributes != null && attributes.get(LOGIN_USER_ATTR) instanceof LoginUser loginUser) {
+                        ThreadLocalUtil.set(loginUser);
                     }
                 }
                 return message;
             }
+
+            @Override
+            public void afterMessageHandled(Message<?> message, MessageChannel channel, MessageHandler handler, Exception ex) {
+                if (handler instanceof SimpAnnotationMethodMessageHandler) {
+                    ThreadLocalUtil.remove();
+                    return;
+                }
+                // 等 UserDestinationMessageHandler 把订阅登记到 broker 之后再补发，否则补发的消息会早于订阅被丢弃
+                if (ex != null || !(handler instanceof UserDestinationMessageHandler)) {
+                    return;
+                }
+                StompHeaderAccessor accessor = StompHeaderAccessor.wrap(message);
+                if (!StompCommand.SUBSCRIBE.equals(accessor.getCommand())
+                        || !MESSAGES_SUBSCRIPTION.equals(accessor.getDestination())
+                        || accessor.getUser() == null) {
+                    return;
+                }
+                Map<String, Object> attributes = accessor.getSessionAttributes();
+                Long lastSeq = attributes == null ? null : (Long) attributes.get(LAST_SEQ_HEADER);
+                messageDeliveryService.resume(accessor.getUser().getName(), accessor.getSessionId(), lastSeq);
+            }
         });
     }
+
+    @PreDestroy
+    public void shutdownHeartbeatScheduler() {
+        if (heartbeatScheduler != null) {
+            heartbeatScheduler.shutdown();
+        }
+    }
+
+    private void rememberLoginUser(StompHeaderAccessor accessor, DecodedJWT jwt, Map<String, Object> claims) {
+        Map<String, Object> attributes = accessor.getSessionAttributes();
+        if (attributes == null) {
+            return;
+        }
+        Object username = claims.get("username");
+        attributes.put(LOGIN_USER_ATTR, new LoginUser(
+                UUID.fromString((String) claims.get("id")),
+                username == null ? null : username.toString(),
+                JwtUtil.tokenId(jwt)));
+    }
+
+    // 校验签名、过期时间和吊销名单，任一不通过都拒绝连接
+    private DecodedJWT authenticate(String authHeader) {
+        if (authHeader == null || !authHeader.startsWith("Bearer ")) {
+            throw new MessagingException("未登录");
+        }
+        DecodedJWT jwt;
+        try {
+            jwt = JwtUtil.verify(authHeader.substring(7));
+        } catch (Exception e) {
+            System.out.println("WebSocket Token 验证失败: " + e.getMessage());
+            throw new MessagingException("token 无效");
+        }
+        // 已注销/已刷新的 token 不允许建立连接
+        if (tokenRevocationService.isRevoked(JwtUtil.tokenId(jwt))) {
+            throw new MessagingException("token 已失效");
+        }
+        return jwt;
+    }
+
+    private void rememberLastSeq(StompHeaderAccessor accessor) {
+        String lastSeq = accessor.getFirstNativeHeader(LAST_SEQ_HEADER);
+        Map<String, Object> attributes = accessor.getSessionAttributes();
+        if (lastSeq == null || attributes == null) {
+            return;
+        }
+        try {
+            attributes.put(LAST_SEQ_HEADER, Long.parseLong(lastSeq));
+        } catch (NumberFormatException ignored) {
+        }
+    }
+
+    @Override
+    public void configureClientOutboundChannel(ChannelRegistration registration) {
+        if (useVirtualThreads()) {
+            registration.executor(virtualThreadExecutor("stomp-outbound-"));
+        }
+    }
+
+    private boolean useVirtualThreads() {
+        return virtualThreadsEnabled && Runtime.version().feature() >= 21;
+    }
+
+    private Executor virtualThreadExecutor(String threadNamePrefix) {
+        SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor(threadNamePrefix);
+        executor.setVirtualThreads(true);
+        return executor;
+    }
 }
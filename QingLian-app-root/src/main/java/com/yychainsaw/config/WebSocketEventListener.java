@@ -1,14 +1,22 @@
 package com.yychainsaw.config; // 放在 config 包或 controller 包下
 
+import com.yychainsaw.service.PresenceService;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.event.EventListener;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
 import org.springframework.stereotype.Component;
 import org.springframework.web.socket.messaging.SessionConnectedEvent;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
 
 import java.security.Principal;
+import java.util.UUID;
 
 @Component
 public class WebSocketEventListener {
 
+    @Autowired
+    private PresenceService presenceService;
+
     @EventListener
     public void handleWebSocketConnectListener(SessionConnectedEvent event) {
         Principal user = event.getUser();
@@ -16,8 +24,15 @@ public class WebSocketEventListener {
             System.out.println("====== WebSocket 新连接 ======");
             System.out.println("系统认定的用户名为 (Principal Name): " + user.getName());
             System.out.println("==============================");
+            presenceService.online(UUID.fromString(user.getName()),
+                    StompHeaderAccessor.wrap(event.getMessage()).getSessionId());
         } else {
             System.out.println("====== WebSocket 新连接 (未认证用户) ======");
         }
     }
+
+    @EventListener
+    public void handleWebSocketDisconnectListener(SessionDisconnectEvent event) {
+        presenceService.offline(event.getSessionId());
+    }
 }
@@ -5,6 +5,7 @@ import com.yychainsaw.pojo.dto.UserLoginDTO;
 import com.yychainsaw.pojo.dto.UserRegisterDTO;
 import com.yychainsaw.pojo.vo.TokenVO;
 import com.yychainsaw.service.AuthService;
+import jakarta.servlet.http.HttpServletRequest;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
@@ -22,8 +23,8 @@ public class AuthController {
     }
 
     @PostMapping("/login")
-    public Result login(@RequestBody @Validated UserLoginDTO dto) {
-        TokenVO tokenVO = authService.login(dto);
+    public Result login(@RequestBody @Validated UserLoginDTO dto, HttpServletRequest request) {
+        TokenVO tokenVO = authService.login(dto, getClientIp(request));
         return Result.success(tokenVO);
     }
 
@@ -38,4 +39,9 @@ public class AuthController {
         String newToken = authService.refreshToken(token);
         return Result.success(newToken);
     }
+
+    // 转发头只在来自可信代理时由 RemoteIpValve 改写到 remoteAddr (见 ForwardedHeaderConfig)，这里不直接读请求头
+    private String getClientIp(HttpServletRequest request) {
+        return request.getRemoteAddr();
+    }
 }
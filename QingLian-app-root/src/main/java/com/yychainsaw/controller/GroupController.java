@@ -37,7 +37,7 @@ public class GroupController {
     @GetMapping("/{groupId}/members")
     public Result<List<GroupMember>> getGroupMembers(@PathVariable Long groupId) {
         // 需要在 Service 层实现 getGroupMembers 方法
-        List<GroupMember> members = groupService.getGroupMembers(groupId);
+        List<GroupMember> members = groupService.getGroupMembersWithOnline(groupId);
         return Result.success(members);
     }
 
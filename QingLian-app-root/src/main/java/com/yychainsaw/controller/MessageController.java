@@ -2,14 +2,24 @@ package com.yychainsaw.controller;
 
 import com.github.pagehelper.PageHelper;
 import com.github.pagehelper.PageInfo;
+import com.yychainsaw.pojo.dto.CursorPageBean;
 import com.yychainsaw.pojo.dto.MessageSendDTO;
 import com.yychainsaw.pojo.dto.PageBean;
+import com.yychainsaw.pojo.dto.ReadReceiptDTO;
 import com.yychainsaw.pojo.dto.Result;
+import com.yychainsaw.pojo.dto.TypingDTO;
 import com.yychainsaw.pojo.entity.Message;
+import com.yychainsaw.pojo.vo.MessageReceiptVO;
 import com.yychainsaw.pojo.vo.MessageVO;
+import com.yychainsaw.service.MessageDeliveryService;
 import com.yychainsaw.service.MessageService;
+import com.yychainsaw.service.ReceiptService;
+import com.yychainsaw.utils.ThreadLocalUtil;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.handler.annotation.MessageMapping;
+import org.springframework.messaging.handler.annotation.Payload;
+import org.springframework.messaging.simp.annotation.SendToUser;
+import org.springframework.util.StringUtils;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
 
@@ -26,7 +36,10 @@ public class MessageController {
     private MessageService messageService;
 
     @Autowired
-    private SimpMessagingTemplate messagingTemplate;
+    private MessageDeliveryService messageDeliveryService;
+
+    @Autowired
+    private ReceiptService receiptService;
 
     @PostMapping
     public Result sendMessage(@RequestBody @Validated MessageSendDTO dto) {
@@ -35,24 +48,85 @@ public class MessageController {
             return Result.error("接收者或群组ID不能为空");
         }
 
+        return Result.success(sendAndPush(dto));
+    }
+
+    // STOMP 私聊发送 (/app/chat.private)，用户取自连接时认证的会话，回执只发给当前会话
+    @MessageMapping("/chat.private")
+    @SendToUser(destinations = "/queue/receipts", broadcast = false)
+    public MessageReceiptVO sendPrivateMessage(@Payload MessageSendDTO dto) {
+        if (!StringUtils.hasText(dto.getReceiverId())) {
+            return MessageReceiptVO.failed(dto.getClientMsgId(), "接收者ID不能为空");
+        }
+        dto.setGroupId(null);
+        return sendWithReceipt(dto);
+    }
+
+    // STOMP 群聊发送 (/app/chat.group)
+    @MessageMapping("/chat.group")
+    @SendToUser(destinations = "/queue/receipts", broadcast = false)
+    public MessageReceiptVO sendGroupMessage(@Payload MessageSendDTO dto) {
+        if (dto.getGroupId() == null) {
+            return MessageReceiptVO.failed(dto.getClientMsgId(), "群组ID不能为空");
+        }
+        dto.setReceiverId(null);
+        return sendWithReceipt(dto);
+    }
+
+    // STOMP 已读信号 (/app/chat.read)，服务端按会话合并后统一写水位
+    @MessageMapping("/chat.read")
+    public void readReceipt(@Payload ReadReceiptDTO dto) {
+        if (dto.getLastMsgId() == null) {
+            return;
+        }
+        UUID userId = ThreadLocalUtil.getCurrentUserId();
+        if (dto.getGroupId() != null) {
+            receiptService.onGroupRead(userId, dto.getGroupId(), dto.getLastMsgId());
+        } else if (StringUtils.hasText(dto.getPeerId())) {
+            receiptService.onRead(userId, UUID.fromString(dto.getPeerId()), dto.getLastMsgId());
+        }
+    }
+
+    // STOMP 正在输入信号 (/app/chat.typing)
+    @MessageMapping("/chat.typing")
+    public void typing(@Payload TypingDTO dto) {
+        if (!StringUtils.hasText(dto.getPeerId())) {
+            return;
+        }
+        receiptService.onTyping(ThreadLocalUtil.getCurrentUserId(), UUID.fromString(dto.getPeerId()),
+                Boolean.TRUE.equals(dto.getTyping()));
+    }
+
+    private MessageReceiptVO sendWithReceipt(MessageSendDTO dto) {
+        if (!StringUtils.hasText(dto.getContent())) {
+            return MessageReceiptVO.failed(dto.getClientMsgId(), "消息内容不能为空");
+        }
+        if (!StringUtils.hasText(dto.getType())) {
+            return MessageReceiptVO.failed(dto.getClientMsgId(), "消息类型不能为空");
+        }
+        try {
+            return MessageReceiptVO.ok(dto.getClientMsgId(), sendAndPush(dto));
+        } catch (Exception e) {
+            return MessageReceiptVO.failed(dto.getClientMsgId(), e.getMessage());
+        }
+    }
+
+    private MessageVO sendAndPush(MessageSendDTO dto) {
         MessageVO messageVO = messageService.sendMessage(dto);
+        if (messageVO.getId() == null) {
+            // 异步落库模式: 落库分配 msg_id 后由落库线程推送给接收方
+            return messageVO;
+        }
 
         if (dto.getGroupId() != null) {
 
-            messagingTemplate.convertAndSend(
-                    "/topic/group." + dto.getGroupId(),
-                    messageVO
-            );
+            messageDeliveryService.sendToGroup(dto.getGroupId(), messageVO);
         } else {
 
-            messagingTemplate.convertAndSendToUser(
-                    dto.getReceiverId(),
-                    "/queue/messages",
-                    messageVO
-            );
+            // 私聊走可靠推送，接收方断线重连后按 seq 补发
+            messageDeliveryService.sendReliableToUser(dto.getReceiverId(), messageVO);
         }
-
-        return Result.success(messageVO);
+        return messageVO;
     }
 
     // 标记群消息已读 (前端进入群聊页面时调用)
@@ -111,4 +185,25 @@ public class MessageController {
         PageBean<MessageVO> pageBean = new PageBean<>(pageInfo.getTotal(), voList);
         return Result.success(pageBean);
     }
+
+    // 游标分页: before 向前翻 (更早的消息)，after 拉取新消息，均不传时返回最新一页
+    @GetMapping("/history/{friendId}/cursor")
+    public Result<CursorPageBean<MessageVO>> getChatHistoryByCursor(
+            @PathVariable String friendId,
+            @RequestParam(required = false) Long before,
+            @RequestParam(required = false) Long after,
+            @RequestParam(defaultValue = "20") Integer limit) {
+
+        return Result.success(messageService.getChatHistoryByCursor(UUID.fromString(friendId), before, after, limit));
+    }
+
+    @GetMapping("/groups/{groupId}/history/cursor")
+    public Result<CursorPageBean<MessageVO>> getGroupChatHistoryByCursor(
+            @PathVariable Long groupId,
+            @RequestParam(required = false) Long before,
+            @RequestParam(required = false) Long after,
+            @RequestParam(defaultValue = "20") Integer limit) {
+
+        return Result.success(messageService.getGroupChatHistoryByCursor(groupId, before, after, limit));
+    }
 }
@@ -1,6 +1,7 @@
 package com.yychainsaw.controller;
 
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
+import com.yychainsaw.pojo.dto.CursorPageBean;
 import com.yychainsaw.pojo.dto.PageBean;
 import com.yychainsaw.pojo.dto.PostCreateDTO;
 import com.yychainsaw.pojo.dto.Result;
@@ -40,6 +41,22 @@ public class PostController {
     }
 
 
+    // 游标翻页的 Feed 流，cursor 为上一页返回的 nextCursor，首页不传
+    @GetMapping("/feed/cursor")
+    public Result<CursorPageBean<PostVO>> getFeedByCursor(@RequestParam(required = false) String cursor,
+                                                          @RequestParam(defaultValue = "10") Integer size) {
+        return Result.success(postService.getPostFeedByCursor(cursor, size));
+    }
+
+
+    // 好友动态时间线，cursor 为上一页返回的 nextCursor
+    @GetMapping("/timeline")
+    public Result<CursorPageBean<PostVO>> getTimeline(@RequestParam(required = false) Long cursor,
+                                                      @RequestParam(defaultValue = "10") Integer size) {
+        return Result.success(postService.getTimeline(cursor, size));
+    }
+
+
     @PostMapping("/posts/{postId}/like")
     public Result likePost(@PathVariable Long postId) {
         postService.likePost(postId);
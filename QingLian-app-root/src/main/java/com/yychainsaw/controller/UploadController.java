@@ -1,28 +1,34 @@
 package com.yychainsaw.controller;
 
 import com.yychainsaw.pojo.dto.Result;
-import com.yychainsaw.utils.AliOssUtil;
+import com.yychainsaw.pojo.dto.UploadCompleteDTO;
+import com.yychainsaw.pojo.dto.UploadPresignDTO;
+import com.yychainsaw.pojo.vo.PresignedUploadVO;
+import com.yychainsaw.service.UploadService;
+import com.yychainsaw.service.impl.LocalFileStorageService;
+import jakarta.servlet.http.HttpServletRequest;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.web.bind.annotation.PostMapping;
-import org.springframework.web.bind.annotation.RestController;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.validation.annotation.Validated;
+import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
-import java.util.Arrays;
+import java.io.IOException;
 import java.util.List;
-import java.util.UUID;
-import java.util.stream.Collectors;
 
 @Slf4j
 @RestController
 public class UploadController {
 
-    // 允许上传的文件类型白名单
-    private static final List<String> ALLOWED_EXTENSIONS = Arrays.asList(".jpg", ".jpeg", ".png", ".gif", ".webp");
+    @Autowired
+    private UploadService uploadService;
+    @Autowired(required = false)
+    private LocalFileStorageService localFileStorageService;
 
     @PostMapping("/upload")
     public Result<String> upload(MultipartFile file) {
         try {
-            String url = uploadSingleFile(file);
+            String url = uploadService.uploadImage(file);
             // 单个上传通常由 Tomcat 线程处理
             log.info("单文件上传完成: {}", url);
             return Result.success(url);
@@ -42,17 +48,7 @@ public class UploadController {
         long startTime = System.currentTimeMillis();
 
         try {
-            // 使用 parallelStream 自动利用 ForkJoinPool 进行多线程并发上传
-            List<String> urls = Arrays.stream(files)
-                    .parallel() // 开启并行流
-                    .map(file -> {
-                        try {
-                            return uploadSingleFile(file);
-                        } catch (Exception e) {
-                            throw new RuntimeException("文件 " + file.getOriginalFilename() + " 上传失败: " + e.getMessage());
-                        }
-                    })
-                    .collect(Collectors.toList());
+            List<String> urls = uploadService.uploadImages(files);
 
             long endTime = System.currentTimeMillis();
             log.info("=== 批量上传结束，总耗时: {} ms ===", (endTime - startTime));
@@ -64,26 +60,44 @@ public class UploadController {
         }
     }
 
-    private String uploadSingleFile(MultipartFile file) throws Exception {
-        if (file.isEmpty()) {
-            throw new IllegalArgumentException("上传文件不能为空");
+    // 请求体即文件内容 (Content-Type 为图片类型)，大文件边读边分片上传
+    @PostMapping("/upload/stream")
+    public Result<String> uploadStream(@RequestParam String filename, HttpServletRequest request) {
+        try {
+            String url = uploadService.uploadImageStream(filename, request.getContentType(),
+                    request.getContentLengthLong(), request.getInputStream());
+            log.info("流式上传完成: {}", url);
+            return Result.success(url);
+        } catch (Exception e) {
+            log.error("流式上传失败", e);
+            return Result.error(e.getMessage());
         }
+    }
 
-        String originalFilename = file.getOriginalFilename();
-
-        log.info(">>> 线程 [{}] 正在处理文件: {}", Thread.currentThread().getName(), originalFilename);
+    // 直传: 申请上传凭证，客户端随后把文件直接传到存储
+    @PostMapping("/upload/presign")
+    public Result<PresignedUploadVO> presign(@RequestBody @Validated UploadPresignDTO dto) {
+        return Result.success(uploadService.presignImageUpload(dto));
+    }
 
-        String extension = "";
-        if (originalFilename != null && originalFilename.contains(".")) {
-            extension = originalFilename.substring(originalFilename.lastIndexOf(".")).toLowerCase();
-        }
+    // 直传: 上传完成回调，校验通过后返回图片地址
+    @PostMapping("/upload/complete")
+    public Result<String> complete(@RequestBody @Validated UploadCompleteDTO dto) {
+        return Result.success(uploadService.completeImageUpload(dto.getObjectName()));
+    }
 
-        if (!ALLOWED_EXTENSIONS.contains(extension)) {
-            throw new IllegalArgumentException("不支持的文件格式，仅支持图片");
+    // 本地存储模式下的直传目标地址 (OSS 模式下客户端以 PostObject 表单直接上传到 OSS)
+    @PutMapping("/upload/direct/{fileName}")
+    public Result directUpload(@PathVariable String fileName,
+                               @RequestParam Long expires,
+                               @RequestParam Long size,
+                               @RequestParam String signature,
+                               HttpServletRequest request) throws IOException {
+        if (localFileStorageService == null) {
+            return Result.error("当前存储不支持该上传方式");
         }
-
-        String objectName = UUID.randomUUID().toString() + extension;
-
-        return AliOssUtil.uploadFile(objectName, file.getInputStream());
+        localFileStorageService.acceptPresignedUpload("direct/" + fileName, request.getContentType(),
+                size, expires, signature, request.getInputStream());
+        return Result.success();
     }
 }
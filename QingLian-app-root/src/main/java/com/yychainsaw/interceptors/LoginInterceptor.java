@@ -1,5 +1,9 @@
 package com.yychainsaw.interceptors;
 
+import com.auth0.jwt.interfaces.DecodedJWT;
+import com.yychainsaw.pojo.AuthProperties;
+import com.yychainsaw.pojo.LoginUser;
+import com.yychainsaw.service.TokenRevocationService;
 import com.yychainsaw.utils.JwtUtil;
 import com.yychainsaw.utils.ThreadLocalUtil;
 import jakarta.servlet.http.HttpServletRequest;
@@ -11,12 +15,17 @@ import org.springframework.stereotype.Component;
 import org.springframework.web.servlet.HandlerInterceptor;
 
 import java.util.Map;
+import java.util.UUID;
 
 @Component
 public class LoginInterceptor implements HandlerInterceptor {
 
     @Autowired
     private StringRedisTemplate stringRedisTemplate;
+    @Autowired
+    private TokenRevocationService tokenRevocationService;
+    @Autowired
+    private AuthProperties authProperties;
 
     @Override
     public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) throws Exception {
@@ -38,16 +47,29 @@ public class LoginInterceptor implements HandlerInterceptor {
         }
 
         try {
-            ValueOperations<String, String> operations = stringRedisTemplate.opsForValue();
-            String redisToken = operations.get(token);
+            DecodedJWT jwt = JwtUtil.verify(token);
 
-            if (redisToken == null) {
-                throw new RuntimeException();
-            }
+            if (authProperties.isStateless()) {
+                // 无状态模式: 签名和过期时间已校验，只需再查本地吊销名单
+                if (tokenRevocationService.isRevoked(JwtUtil.tokenId(jwt))) {
+                    throw new RuntimeException();
+                }
+            } else {
+                ValueOperations<String, String> operations = stringRedisTemplate.opsForValue();
+                String redisToken = operations.get(token);
 
-            Map<String, Object> claims = JwtUtil.parseToken(token);
+                if (redisToken == null) {
+                    throw new RuntimeException();
+                }
+            }
 
-            ThreadLocalUtil.set(claims);
+            // 声明只在这里解析一次，后续直接用强类型的 LoginUser
+            Map<String, Object> claims = jwt.getClaim("claims").asMap();
+            Object username = claims.get("username");
+            ThreadLocalUtil.set(new LoginUser(
+                    UUID.fromString((String) claims.get("id")),
+                    username == null ? null : username.toString(),
+                    JwtUtil.tokenId(jwt)));
 
             return true;
         } catch (Exception e) {
@@ -2,9 +2,16 @@ package com.yychainsaw.mapper;
 
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 import com.yychainsaw.pojo.entity.ChatGroup;
+import com.yychainsaw.pojo.vo.GroupListVO;
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+
+import java.util.List;
+import java.util.UUID;
 
 @Mapper
 public interface ChatGroupMapper extends BaseMapper<ChatGroup> {
 
+    // 一条语句查出用户加入的所有群及每个群的最后一条消息
+    List<GroupListVO> selectUserGroupList(@Param("userId") UUID userId);
 }
@@ -0,0 +1,25 @@
+package com.yychainsaw.mapper;
+
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.yychainsaw.pojo.entity.Conversation;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+@Mapper
+public interface ConversationMapper extends BaseMapper<Conversation> {
+
+    // 一条语句同时更新发送方与接收方两行摘要，接收方未读数 +1，内容只保留前 100 字作为预览
+    void upsertOnSend(@Param("senderId") UUID senderId,
+                      @Param("receiverId") UUID receiverId,
+                      @Param("msgId") Long msgId,
+                      @Param("content") String content,
+                      @Param("sentAt") LocalDateTime sentAt);
+
+    int resetUnread(@Param("ownerId") UUID ownerId, @Param("peerId") UUID peerId);
+
+    // 按水位标记已读时只扣除实际标记的条数，最低为 0
+    int decrementUnread(@Param("ownerId") UUID ownerId, @Param("peerId") UUID peerId, @Param("count") int count);
+}
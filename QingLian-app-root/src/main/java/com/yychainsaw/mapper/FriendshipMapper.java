@@ -7,6 +7,7 @@ import com.yychainsaw.pojo.vo.FriendListVO;
 import com.yychainsaw.pojo.vo.FriendPlanVO;
 import com.yychainsaw.pojo.vo.FriendRankingVO;
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
 import org.apache.ibatis.annotations.Select;
 
 import java.util.List;
@@ -21,4 +22,7 @@ public interface FriendshipMapper extends BaseMapper<Friendship> {
     List<FriendRankingVO> selectFriendRankings(UUID userId);
 
     List<FriendListVO> selectFriendList(UUID userId);
+
+    // 双向好友的 id 列表
+    List<UUID> selectFriendIds(@Param("userId") UUID userId);
 }
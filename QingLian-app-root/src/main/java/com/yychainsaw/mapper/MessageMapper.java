@@ -2,7 +2,9 @@ package com.yychainsaw.mapper;
 
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 import com.yychainsaw.pojo.entity.Message;
+import com.yychainsaw.pojo.vo.GroupUnreadVO;
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
 import org.apache.ibatis.annotations.Select;
 
 import java.util.List;
@@ -14,7 +16,41 @@ public interface MessageMapper extends BaseMapper<Message> {
 
     List<Message> selectChatHistory(UUID userId, UUID friendId);
 
-    void markGroupAsRead(Long groupId, UUID userId, Long lastMsgId);
+    // 多行 INSERT，返回本次实际写入的 msg_id；(sender_id, client_msg_id) 已存在的行跳过，重试幂等
+    List<Message> insertBatch(@Param("messages") List<Message> messages);
+
+    // 按 (sender_id, client_msg_id) 查已写入行的 msg_id
+    List<Message> selectByClientMsgIds(@Param("messages") List<Message> messages);
+
+    // 游标分页: beforeId / afterId 二选一，均为空时取最新一页
+    List<Message> selectChatHistoryByCursor(@Param("userId") UUID userId,
+                                            @Param("friendId") UUID friendId,
+                                            @Param("beforeId") Long beforeId,
+                                            @Param("afterId") Long afterId,
+                                            @Param("limit") Integer limit);
+
+    List<Message> selectGroupHistoryByCursor(@Param("groupId") Long groupId,
+                                             @Param("beforeId") Long beforeId,
+                                             @Param("afterId") Long afterId,
+                                             @Param("limit") Integer limit);
+
+    // 返回 GREATEST 之后实际生效的已读水位
+    Long markGroupAsRead(@Param("groupId") Long groupId,
+                         @Param("userId") UUID userId,
+                         @Param("lastMsgId") Long lastMsgId);
+
+    // 私聊已读水位: 把 senderId 发给 receiverId 且不晚于 lastMsgId 的未读消息标为已读
+    int markReadUpTo(@Param("receiverId") UUID receiverId,
+                     @Param("senderId") UUID senderId,
+                     @Param("lastMsgId") Long lastMsgId);
 
     Long countTotalUnread(UUID userId);
+
+    Long countGroupUnreadAfter(@Param("groupId") Long groupId,
+                               @Param("userId") UUID userId,
+                               @Param("lastMsgId") Long lastMsgId);
+
+    List<GroupUnreadVO> selectGroupUnreadByUser(@Param("userId") UUID userId);
+
+    List<GroupUnreadVO> selectGroupUnreadByGroups(@Param("groupIds") List<Long> groupIds);
 }
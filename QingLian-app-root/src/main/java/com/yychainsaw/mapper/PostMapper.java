@@ -12,6 +12,7 @@ import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Param;
 import org.apache.ibatis.annotations.Select;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
@@ -21,9 +22,36 @@ public interface PostMapper extends BaseMapper<Post> {
 
     List<PostVO> selectPostFeed();
 
+    // 按 (created_at, post_id) 倒序取游标之后的帖子，cursorTime 为 null 时取第一页
+    List<PostVO> selectPostFeedByCursor(@Param("cursorTime") LocalDateTime cursorTime,
+                                        @Param("cursorPostId") Long cursorPostId,
+                                        @Param("limit") Integer limit);
+
     List<InfluencerVO> selectActiveInfluencers();
 
     List<PotentialFriendVO> selectPotentialFriends(@Param("userId") UUID userId);
 
     List<GenderStatVO> selectGenderWeightStats();
+
+    List<PostVO> selectPostVOsByIds(@Param("postIds") List<Long> postIds);
+
+    // 自己和好友最近的帖子 id (时间线重建)
+    List<Long> selectTimelinePostIds(@Param("userId") UUID userId, @Param("limit") Integer limit);
+
+    // 指定作者中属于好友的帖子 id (大V 读时拉取)
+    List<Long> selectFriendPostIdsByAuthors(@Param("userId") UUID userId,
+                                            @Param("authorIds") List<UUID> authorIds,
+                                            @Param("maxPostId") Long maxPostId,
+                                            @Param("limit") Integer limit);
+
+    // 批量累加点赞数: postId -> 增量
+    int incrementLikes(@Param("deltas") Map<Long, Long> deltas);
+
+    // 只取 post_id 与 likes_count
+    List<Post> selectLikesCounts(@Param("postIds") List<Long> postIds);
+
+    // 记录点赞落库批次，已存在时返回 0
+    int insertLikeFlush(@Param("flushId") String flushId);
+
+    int deleteLikeFlushesBefore(@Param("before") LocalDateTime before);
 }
\ No newline at end of file
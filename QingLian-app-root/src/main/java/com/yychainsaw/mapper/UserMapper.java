@@ -4,12 +4,17 @@ import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 import com.yychainsaw.pojo.entity.User;
 import com.yychainsaw.pojo.vo.UserSocialDashboardVO;
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
 import org.apache.ibatis.annotations.Select;
 
+import java.time.LocalDateTime;
 import java.util.Map;
 import java.util.UUID;
 
 @Mapper
 public interface UserMapper extends BaseMapper<User> {
     UserSocialDashboardVO selectUserSocialDashboard(UUID userId);
+
+    // 批量写入最后登录时间: userId -> 登录时间
+    int updateLastLoginTimes(@Param("loginTimes") Map<UUID, LocalDateTime> loginTimes);
 }
@@ -0,0 +1,22 @@
+package com.yychainsaw.pojo;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+// 登录校验配置
+// mode = redis: 每次请求查 Redis 中的 token (默认，兼容旧行为)
+// mode = stateless: 只校验 JWT 签名，再查本地吊销名单，稳定状态下不访问 Redis
+@Data
+@Component
+@ConfigurationProperties(prefix = "qinglian.auth")
+public class AuthProperties {
+    private String mode = "redis";
+    private long revocationResyncMs = 60000; // 从 Redis 全量同步吊销名单的间隔，兜底丢失的发布订阅消息
+    // 可信反向代理地址 (正则)，只有直连地址匹配时才采信 X-Forwarded-For，为空表示不采信任何转发头
+    private String trustedProxies = "";
+
+    public boolean isStateless() {
+        return "stateless".equalsIgnoreCase(mode);
+    }
+}
@@ -0,0 +1,26 @@
+package com.yychainsaw.pojo;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+// 文件存储配置，OSS 账号信息仍在 AliOssProperties (aliyun.oss.*)
+@Data
+@Component
+@ConfigurationProperties(prefix = "qinglian.storage")
+public class FileStorageProperties {
+    private String type = "oss";                       // oss / local，local 用于离线开发和测试
+    private String bucketName = "qinglian-yychiansaw";
+    private String region = "cn-hangzhou";
+    private int maxConnections = 128;                  // OSS 客户端连接池大小
+    private int connectionTimeoutMs = 5000;
+    private int socketTimeoutMs = 30000;
+    private long multipartThreshold = 8 * 1024 * 1024; // 超过该大小 (或大小未知) 时走分片上传
+    private int partSize = 5 * 1024 * 1024;            // 分片大小，同时是流式读取的缓冲区大小
+    private int uploadThreads = 8;                     // 上传线程数
+    private int uploadQueueCapacity = 64;              // 等待上传的任务上限，满了由调用线程自己上传
+    private long presignTtlSeconds = 300;              // 直传凭证有效期
+    private long dedupeTtlDays = 30;                   // 内容去重索引有效期，命中时续期
+    private String localDir = "uploads";               // local: 文件保存目录
+    private String localUrlPrefix = "/files";          // local: 访问地址前缀
+}
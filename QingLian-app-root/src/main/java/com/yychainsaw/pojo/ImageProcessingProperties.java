@@ -0,0 +1,25 @@
+package com.yychainsaw.pojo;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// 上传图片处理配置
+@Data
+@Component
+@ConfigurationProperties(prefix = "qinglian.image")
+public class ImageProcessingProperties {
+    private boolean enabled = true;
+    private int maxDimension = 1920;                  // 原图长边上限，超过则等比缩小
+    private long maxSourceBytes = 20 * 1024 * 1024;   // 允许上传的原始文件大小上限
+    private long maxPixels = 40_000_000;              // 允许解码的像素数上限 (宽 x 高)，解码后约占 4 字节/像素
+    private long maxInFlightBytes = 128 * 1024 * 1024; // 同时读入内存等待处理的原图字节数上限，超出时排队
+    private long inFlightWaitMs = 5000;               // 排队等待的最长时间，超时返回服务繁忙
+    private float jpegQuality = 0.85f;
+    private Map<String, Integer> variants = new LinkedHashMap<>(Map.of("thumb", 720, "small", 240)); // 缩略图名称 -> 长边像素
+    private String listVariant = "thumb";             // 列表页使用的缩略图
+    private int threads = Runtime.getRuntime().availableProcessors(); // 编解码线程数 (CPU 密集)
+}
@@ -0,0 +1,13 @@
+package com.yychainsaw.pojo;
+
+import lombok.Value;
+
+import java.util.UUID;
+
+// 当前登录用户，由 LoginInterceptor 在请求入口解析一次，之后只读
+@Value
+public class LoginUser {
+    UUID userId;
+    String username;
+    String tokenId;
+}
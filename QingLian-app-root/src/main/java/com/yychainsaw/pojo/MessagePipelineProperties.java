@@ -0,0 +1,19 @@
+package com.yychainsaw.pojo;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+// 消息异步批量落库 (write-behind) 配置，默认关闭
+@Data
+@Component
+@ConfigurationProperties(prefix = "qinglian.message.pipeline")
+public class MessagePipelineProperties {
+    private boolean enabled = false;
+    private int queueCapacity = 10000;  // 待落库队列上限
+    private int batchSize = 200;        // 单条 INSERT 最多写入的行数
+    private long flushIntervalMs = 20;  // 攒批等待时间
+    private long offerTimeoutMs = 50;   // 队列满时的等待时间，超时后退化为同步写入
+    private int maxRetries = 5;         // 暂时性失败 (连接、超时、死锁等) 的重试次数，超过后回执 FAILED
+    private long retryBackoffMs = 500;  // 有待重试的消息时，下一批之前的等待时间
+}
@@ -0,0 +1,21 @@
+package com.yychainsaw.pojo;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+// 密码哈希配置
+@Data
+@Component
+@ConfigurationProperties(prefix = "qinglian.password")
+public class PasswordHashProperties {
+    private String algorithm = "bcrypt"; // 新密码使用的算法: bcrypt / pbkdf2，切换后旧哈希在登录时自动升级
+    private int bcryptCost = 10;         // bcrypt 代价因子，每 +1 耗时翻倍；调高后旧哈希同样会在登录时升级
+    private int poolSize = Runtime.getRuntime().availableProcessors(); // 哈希计算线程数
+    private int queueCapacity = 200;     // 等待计算的任务上限，超出直接拒绝，避免登录洪峰拖垮请求线程
+    private long timeoutMs = 3000;       // 请求线程等待哈希结果的最长时间
+    private int upgradePoolSize = 1;     // 旧哈希升级线程数 (低优先级，与登录校验分开)
+    private int upgradeQueueCapacity = 100; // 等待升级的任务上限，满了跳过，下次登录再升级
+    private long credentialCacheSize = 10000;    // 最近校验成功的凭据缓存条数，0 表示关闭
+    private long credentialCacheTtlMinutes = 10;
+}
@@ -0,0 +1,16 @@
+package com.yychainsaw.pojo;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+// 在线状态配置
+@Data
+@Component
+@ConfigurationProperties(prefix = "qinglian.presence")
+public class PresenceProperties {
+    private int shards = 16;               // 本机在线表分片数，每秒轮流刷新一个分片
+    private long ttlSeconds = 60;          // Redis 中在线标记的过期时间，需大于 分片数 秒
+    private long idleTimeoutMs = 120000;   // 会话超过该时间没有任何入站帧 (包括心跳) 视为已断开，0 表示不清理
+    private long heartbeatMs = 10000;      // STOMP 心跳间隔 (服务端发送 / 期望客户端发送)
+}
@@ -0,0 +1,15 @@
+package com.yychainsaw.pojo;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.Map;
+
+// 图片处理结果: 主图和各尺寸缩略图的编码后字节
+@Data
+@AllArgsConstructor
+public class ProcessedImage {
+    private byte[] main;
+    private String contentType;
+    private Map<String, byte[]> variants; // 缩略图名称 -> 字节
+}
@@ -0,0 +1,12 @@
+package com.yychainsaw.pojo;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+// 存储中对象的元数据
+@Data
+@AllArgsConstructor
+public class StoredObjectInfo {
+    private long size;
+    private String contentType;
+}
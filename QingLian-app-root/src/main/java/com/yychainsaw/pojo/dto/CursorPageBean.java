@@ -0,0 +1,17 @@
+package com.yychainsaw.pojo.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+// 游标分页结果 (不查询 total，每页代价与翻页深度无关)
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CursorPageBean<T> {
+    private List<T> items;
+    private String nextCursor; // 继续向同一方向翻页时携带的游标，没有更多数据时为 null
+    private Boolean hasMore;
+}
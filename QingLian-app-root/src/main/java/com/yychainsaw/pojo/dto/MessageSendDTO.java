@@ -15,4 +15,7 @@ public class MessageSendDTO {
 
     @NotBlank(message = "消息类型不能为空")
     private String type;
+
+    // 客户端生成的消息标识，STOMP 发送时原样放回回执，便于客户端对应
+    private String clientMsgId;
 }
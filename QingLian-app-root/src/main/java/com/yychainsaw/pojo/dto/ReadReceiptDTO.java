@@ -0,0 +1,15 @@
+package com.yychainsaw.pojo.dto;
+
+import lombok.Data;
+
+// STOMP 已读信号: 私聊传 peerId (消息发送者)，群聊传 groupId
+@Data
+public class ReadReceiptDTO {
+
+    private String peerId;
+
+    private Long groupId;
+
+    // 已读到的最后一条消息
+    private Long lastMsgId;
+}
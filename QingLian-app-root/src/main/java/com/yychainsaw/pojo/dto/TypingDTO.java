@@ -0,0 +1,12 @@
+package com.yychainsaw.pojo.dto;
+
+import lombok.Data;
+
+// STOMP 正在输入信号 (仅私聊)
+@Data
+public class TypingDTO {
+
+    private String peerId;
+
+    private Boolean typing;
+}
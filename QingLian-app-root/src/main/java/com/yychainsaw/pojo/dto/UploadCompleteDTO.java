@@ -0,0 +1,10 @@
+package com.yychainsaw.pojo.dto;
+
+import jakarta.validation.constraints.NotBlank;
+import lombok.Data;
+
+@Data
+public class UploadCompleteDTO {
+    @NotBlank(message = "对象名不能为空")
+    private String objectName;
+}
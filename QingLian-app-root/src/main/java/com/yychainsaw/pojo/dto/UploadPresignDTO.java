@@ -0,0 +1,19 @@
+package com.yychainsaw.pojo.dto;
+
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Positive;
+import lombok.Data;
+
+@Data
+public class UploadPresignDTO {
+    @NotBlank(message = "文件名不能为空")
+    private String filename;
+
+    @NotBlank(message = "文件类型不能为空")
+    private String contentType;
+
+    @NotNull(message = "文件大小不能为空")
+    @Positive(message = "文件大小必须大于 0")
+    private Long size;
+}
@@ -0,0 +1,32 @@
+package com.yychainsaw.pojo.entity;
+
+import com.baomidou.mybatisplus.annotation.TableField;
+import com.baomidou.mybatisplus.annotation.TableName;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+// 私聊会话摘要 (每个用户对每个聊天对象一行)，在发送/已读时增量维护
+@Data
+@TableName("conversations")
+public class Conversation {
+
+    @TableField("owner_id")
+    private UUID ownerId;
+
+    @TableField("peer_id")
+    private UUID peerId;
+
+    @TableField("last_msg_id")
+    private Long lastMsgId;
+
+    @TableField("last_message")
+    private String lastMessage;
+
+    @TableField("last_message_time")
+    private LocalDateTime lastMessageTime;
+
+    @TableField("unread_count")
+    private Integer unreadCount;
+}
@@ -1,5 +1,6 @@
 package com.yychainsaw.pojo.entity;
 
+import com.baomidou.mybatisplus.annotation.TableField;
 import com.baomidou.mybatisplus.annotation.TableName;
 import com.fasterxml.jackson.annotation.JsonFormat;
 import lombok.Data;
@@ -14,4 +15,8 @@ public class GroupMember {
     private String role; // OWNER, ADMIN, MEMBER
     @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss", timezone = "GMT+8")
     private LocalDateTime joinedAt;
+
+    // 在线状态，查询成员列表接口时实时填充
+    @TableField(exist = false)
+    private Boolean online;
 }
@@ -32,4 +32,8 @@ public class Message {
     private LocalDateTime sentAt;
 
     private String type;
+
+    // 异步落库模式下由发送端生成，落库回执和重试去重按它匹配
+    @TableField("client_msg_id")
+    private String clientMsgId;
 }
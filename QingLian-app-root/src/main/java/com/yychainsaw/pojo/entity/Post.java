@@ -23,6 +23,10 @@ public class Post {
     @TableField(value = "image_urls", typeHandler = StringArrayTypeHandler.class)
     private String[] imageUrls;
 
+    // 与 imageUrls 一一对应的列表页缩略图
+    @TableField(value = "thumbnail_urls", typeHandler = StringArrayTypeHandler.class)
+    private String[] thumbnailUrls;
+
     @TableField("likes_count")
     private Integer likesCount;
 
@@ -0,0 +1,16 @@
+package com.yychainsaw.pojo.vo;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Map;
+
+// 角标推送帧: deltas 为合并窗口内的变化量，values 为推送时的最新值 (计数未初始化时为空)
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BadgeVO {
+    private Map<String, Long> deltas;
+    private Map<String, Long> values;
+}
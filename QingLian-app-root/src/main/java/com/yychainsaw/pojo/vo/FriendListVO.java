@@ -15,4 +15,7 @@ public class FriendListVO {
     private String lastMessage;
     private LocalDateTime lastMessageTime;
     private Integer unreadCount;
+
+    // 在线状态，读取时实时填充，不进缓存
+    private Boolean online;
 }
@@ -0,0 +1,13 @@
+package com.yychainsaw.pojo.vo;
+
+import lombok.Data;
+
+import java.util.UUID;
+
+// 群未读数对账结果 (group, member) -> 未读数
+@Data
+public class GroupUnreadVO {
+    private Long groupId;
+    private UUID userId;
+    private Integer unreadCount;
+}
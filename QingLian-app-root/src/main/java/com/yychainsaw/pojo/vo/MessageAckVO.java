@@ -0,0 +1,15 @@
+package com.yychainsaw.pojo.vo;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// 消息落库回执 (异步落库模式下推送给发送者)
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class MessageAckVO {
+    private String clientMsgId;
+    private Long id;             // 落库失败时为空
+    private String status; // PERSISTED, FAILED
+}
@@ -0,0 +1,24 @@
+package com.yychainsaw.pojo.vo;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// STOMP 发送消息的回执 (只推送给发送消息的那个会话)
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class MessageReceiptVO {
+    private String clientMsgId;
+    private String status; // OK, FAILED
+    private String error;
+    private MessageVO message;
+
+    public static MessageReceiptVO ok(String clientMsgId, MessageVO message) {
+        return new MessageReceiptVO(clientMsgId, "OK", null, message);
+    }
+
+    public static MessageReceiptVO failed(String clientMsgId, String error) {
+        return new MessageReceiptVO(clientMsgId, "FAILED", error, null);
+    }
+}
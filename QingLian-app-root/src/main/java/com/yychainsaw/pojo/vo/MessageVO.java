@@ -16,4 +16,5 @@ public class MessageVO {
     private LocalDateTime sentAt; // 推荐使用时间类型，前端格式化
     private Boolean isRead;      // 消息状态
     private String type;
+    private String clientMsgId;  // 异步落库模式下与回执对应，id 在落库前为空
 }
@@ -12,6 +12,7 @@ public class PostVO {
     private String avatarUrl;  // 关联查询出来的头像
     private String content;
     private String[] imageUrls; // 对应实体类的 String[]
+    private String[] thumbnailUrls; // 列表页缩略图，旧帖子为 null
     private Integer likesCount;
     private LocalDateTime createdAt;
 }
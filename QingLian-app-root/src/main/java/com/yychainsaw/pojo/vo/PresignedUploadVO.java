@@ -0,0 +1,21 @@
+package com.yychainsaw.pojo.vo;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Map;
+
+// 直传凭证: 客户端用 method + headers 把文件直接发到 uploadUrl，完成后调用 /upload/complete
+// method 为 POST 时是表单上传: fields 原样作为表单字段，文件放在最后的 file 字段
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PresignedUploadVO {
+    private String objectName;
+    private String uploadUrl;
+    private String method;
+    private Map<String, String> headers; // 上传时必须原样携带的请求头 (签名包含这些值)
+    private Map<String, String> fields;  // POST 表单字段 (包含签名和上传策略)，PUT 时为空
+    private Long expiresAt;              // 凭证过期时间 (毫秒时间戳)
+}
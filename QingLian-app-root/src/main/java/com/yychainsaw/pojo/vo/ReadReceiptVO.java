@@ -0,0 +1,14 @@
+package com.yychainsaw.pojo.vo;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// 推送给消息发送者: readerId 已读到 lastMsgId
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ReadReceiptVO {
+    private String readerId;
+    private Long lastMsgId;
+}
@@ -0,0 +1,14 @@
+package com.yychainsaw.pojo.vo;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// 推送给聊天对方: userId 正在输入 / 停止输入
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TypingVO {
+    private String userId;
+    private Boolean typing;
+}
@@ -0,0 +1,18 @@
+package com.yychainsaw.pojo.vo;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.UUID;
+
+// 轻量用户资料 (消息、好友、群组展示用)，只包含很少变化的字段
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class UserBriefVO {
+    private UUID userId;
+    private String username;
+    private String nickname;
+    private String avatarUrl;
+}
@@ -7,7 +7,7 @@ import com.yychainsaw.pojo.vo.TokenVO;
 public interface AuthService {
     void register(UserRegisterDTO userRegisterDTO);
 
-    TokenVO login(UserLoginDTO loginDTO);
+    TokenVO login(UserLoginDTO loginDTO, String clientIp);
 
     void logout(String token);
 
@@ -0,0 +1,19 @@
+package com.yychainsaw.service;
+
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * 角标 (未读数等) 状态
+ * 发送 / 已读等事件只改计数，变化合并后通过 /user/queue/badges 推送给用户，客户端不再轮询
+ */
+public interface BadgeService {
+
+    // 私聊未读消息数
+    String MESSAGES = "messages";
+
+    void add(UUID userId, String badge, long delta);
+
+    // 当前所有角标的值，首次读取时从数据库初始化
+    Map<String, Long> getBadges(UUID userId);
+}
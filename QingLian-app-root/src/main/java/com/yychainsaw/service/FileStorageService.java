@@ -0,0 +1,33 @@
+package com.yychainsaw.service;
+
+import com.yychainsaw.pojo.StoredObjectInfo;
+import com.yychainsaw.pojo.vo.PresignedUploadVO;
+
+import java.io.InputStream;
+import java.time.Duration;
+
+public interface FileStorageService {
+
+    /**
+     * 保存文件并返回访问地址
+     *
+     * @param size 字节数，未知时传 -1
+     */
+    String store(String objectName, InputStream in, long size, String contentType);
+
+    String getUrl(String objectName);
+
+    // 生成客户端直传的短时凭证，签名绑定对象名、Content-Type 和申请时声明的字节数 size，超限内容在上传时被拒绝
+    PresignedUploadVO presignUpload(String objectName, String contentType, long size, Duration ttl);
+
+    // 对象不存在时返回 null
+    StoredObjectInfo stat(String objectName);
+
+    // 读取对象开头的若干字节 (用于校验文件头)，不下载整个文件
+    byte[] readHead(String objectName, int length);
+
+    void delete(String objectName);
+
+    // 存储端实时缩放的访问地址，不支持时返回 null
+    String getResizedUrl(String objectName, int maxSize);
+}
@@ -16,5 +16,8 @@ public interface GroupService {
 
     List<GroupMember> getGroupMembers(Long groupId);
 
+    // 成员列表页用，额外填充在线状态
+    List<GroupMember> getGroupMembersWithOnline(Long groupId);
+
     List<GroupListVO> getUserGroups();
 }
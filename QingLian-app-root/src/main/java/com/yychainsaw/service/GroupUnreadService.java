@@ -0,0 +1,20 @@
+package com.yychainsaw.service;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+public interface GroupUnreadService {
+
+    // 群消息发送后为除发送者以外的成员未读数 +1
+    void onGroupMessage(Long groupId, UUID senderId, Collection<UUID> memberIds);
+
+    // 已读水位更新后按水位重新计算该成员在群内的未读数，lastMsgId 须为数据库中生效的水位
+    void onGroupRead(Long groupId, UUID userId, Long lastMsgId);
+
+    Map<Long, Integer> getUnreadCounts(UUID userId, List<Long> groupIds);
+
+    // 将有新消息的群按 group_read_status 水位重新对账
+    void reconcileDirtyGroups();
+}
@@ -0,0 +1,14 @@
+package com.yychainsaw.service;
+
+import com.yychainsaw.pojo.ProcessedImage;
+
+public interface ImageProcessingService {
+
+    /**
+     * 解码、去除元数据、限制尺寸并生成缩略图
+     * 无法解码的格式 (webp / gif 动图) 原样返回，缩略图也使用原图
+     *
+     * @param extension 带点的小写扩展名，如 .jpg
+     */
+    ProcessedImage process(byte[] source, String extension);
+}
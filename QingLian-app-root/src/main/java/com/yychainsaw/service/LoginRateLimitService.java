@@ -0,0 +1,7 @@
+package com.yychainsaw.service;
+
+public interface LoginRateLimitService {
+
+    // 消耗一次登录尝试的令牌，用户名或 IP 任一桶耗尽时抛出异常
+    void acquire(String username, String clientIp);
+}
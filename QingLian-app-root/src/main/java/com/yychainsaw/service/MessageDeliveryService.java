@@ -0,0 +1,31 @@
+package com.yychainsaw.service;
+
+import java.util.Set;
+
+/**
+ * WebSocket 推送入口，业务代码统一通过这里发消息，不直接使用 SimpMessagingTemplate
+ * 集群模式下经 Redis 发布订阅转发，消息能到达连接在其他节点上的用户
+ */
+public interface MessageDeliveryService {
+
+    // 推送到用户的 /user{destination}，userId 即 WebSocket Principal 名
+    void sendToUser(String userId, String destination, Object payload);
+
+    /**
+     * 可靠推送到用户的 /user/queue/messages
+     * 每条消息分配该用户递增的 seq 并写入补发缓冲，断线重连时可按 seq 补齐
+     */
+    void sendReliableToUser(String userId, Object payload);
+
+    /**
+     * 会话订阅 /user/queue/messages 后补发 lastSeq 之后的消息，只发给该会话
+     * lastSeq 为空或缓冲已无法补齐时，只告知客户端当前 seq
+     */
+    void resume(String userId, String sessionId, Long lastSeq);
+
+    // 推送到 /topic/group.{groupId}
+    void sendToGroup(Long groupId, Object payload);
+
+    // 当前持有该用户连接的节点 (仅集群模式有数据)
+    Set<String> getUserNodes(String userId);
+}
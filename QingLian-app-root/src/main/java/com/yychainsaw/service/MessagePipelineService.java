@@ -0,0 +1,13 @@
+package com.yychainsaw.service;
+
+import com.yychainsaw.pojo.entity.Message;
+
+import java.util.function.Consumer;
+
+public interface MessagePipelineService {
+
+    boolean isEnabled();
+
+    // 放入落库队列，立即返回；msg_id 在写入时由数据库分配，落库后回填并调用 onPersisted (在落库线程上)
+    void submit(Message message, Consumer<Message> onPersisted);
+}
@@ -1,5 +1,6 @@
 package com.yychainsaw.service;
 
+import com.yychainsaw.pojo.dto.CursorPageBean;
 import com.yychainsaw.pojo.dto.MessageSendDTO;
 import com.yychainsaw.pojo.entity.Message;
 import com.yychainsaw.pojo.vo.MessageVO;
@@ -21,4 +22,8 @@ public interface MessageService {
     List<Message> getGroupChatHistory(Long groupId);
 
     List<MessageVO> transferToVOList(List<Message> messages);
+
+    CursorPageBean<MessageVO> getChatHistoryByCursor(UUID friendId, Long beforeId, Long afterId, Integer limit);
+
+    CursorPageBean<MessageVO> getGroupChatHistoryByCursor(Long groupId, Long beforeId, Long afterId, Integer limit);
 }
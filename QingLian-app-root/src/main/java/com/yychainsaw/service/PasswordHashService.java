@@ -0,0 +1,13 @@
+package com.yychainsaw.service;
+
+import java.util.UUID;
+
+public interface PasswordHashService {
+
+    String hash(String rawPassword);
+
+    boolean matches(String rawPassword, String storedHash);
+
+    // 登录成功后调用: 旧算法或代价偏低的哈希在后台重新计算并写回
+    void upgradeIfNeeded(UUID userId, String rawPassword, String storedHash);
+}
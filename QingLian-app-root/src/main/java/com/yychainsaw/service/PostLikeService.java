@@ -0,0 +1,23 @@
+package com.yychainsaw.service;
+
+import com.yychainsaw.pojo.vo.PostVO;
+
+import java.util.List;
+import java.util.UUID;
+
+public interface PostLikeService {
+
+    // 每个用户对同一帖子只能点赞一次
+    void like(Long postId, UUID userId);
+
+    // 在数据库点赞数的基础上叠加 Redis 中尚未落库的增量
+    void applyPendingLikes(List<PostVO> posts);
+
+    // 缓存中的帖子: 先用最近一次落库后的点赞数覆盖缓存里的旧值，再叠加未落库的增量
+    void applyLikesToCached(List<PostVO> posts);
+
+    // 将 Redis 中累积的点赞增量批量写回 posts.likes_count
+    void flushPendingLikes();
+
+    void clear(Long postId);
+}
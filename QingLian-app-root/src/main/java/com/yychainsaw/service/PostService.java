@@ -1,5 +1,6 @@
 package com.yychainsaw.service;
 
+import com.yychainsaw.pojo.dto.CursorPageBean;
 import com.yychainsaw.pojo.dto.PageBean;
 import com.yychainsaw.pojo.dto.PostCreateDTO;
 import com.yychainsaw.pojo.dto.PostUpdateDTO;
@@ -15,6 +16,10 @@ public interface PostService {
 
     PageBean<PostVO> getPostFeed(Integer page, Integer size);
 
+    CursorPageBean<PostVO> getPostFeedByCursor(String cursor, Integer size);
+
+    CursorPageBean<PostVO> getTimeline(Long cursor, Integer size);
+
     void likePost(Long postId);
 
     void deletePost(Long postId);
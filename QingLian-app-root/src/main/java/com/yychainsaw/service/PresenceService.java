@@ -0,0 +1,24 @@
+package com.yychainsaw.service;
+
+import java.util.Collection;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * 在线状态，由 WebSocket 会话的连接 / 断开 / 心跳驱动
+ * 本机维护分片的内存表，集群视图通过 Redis 带过期的在线标记汇总
+ */
+public interface PresenceService {
+
+    void online(UUID userId, String sessionId);
+
+    void offline(String sessionId);
+
+    // 会话收到任意入站帧 (包括 STOMP 心跳) 时调用
+    void touch(String sessionId);
+
+    boolean isOnline(UUID userId);
+
+    // 批量查询: 返回给定用户中在线的那部分
+    Set<UUID> getOnlineUsers(Collection<UUID> userIds);
+}
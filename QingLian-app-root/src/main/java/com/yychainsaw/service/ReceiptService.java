@@ -0,0 +1,17 @@
+package com.yychainsaw.service;
+
+import java.util.UUID;
+
+/**
+ * 已读回执 / 正在输入
+ * 客户端通过 STOMP 高频发送信号，服务端按会话合并，每个窗口最多写一次已读水位、给对方推一帧
+ */
+public interface ReceiptService {
+
+    // readerId 已读 peerId 发来的、不晚于 lastMsgId 的消息
+    void onRead(UUID readerId, UUID peerId, long lastMsgId);
+
+    void onGroupRead(UUID userId, Long groupId, long lastMsgId);
+
+    void onTyping(UUID userId, UUID peerId, boolean typing);
+}
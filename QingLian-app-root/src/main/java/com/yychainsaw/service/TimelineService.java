@@ -0,0 +1,19 @@
+package com.yychainsaw.service;
+
+import com.yychainsaw.pojo.dto.CursorPageBean;
+import com.yychainsaw.pojo.entity.Post;
+import com.yychainsaw.pojo.vo.PostVO;
+
+import java.util.UUID;
+
+public interface TimelineService {
+
+    // 发帖后推送到好友的时间线 (好友数过多的作者改为读时拉取)
+    void onPostCreated(Post post);
+
+    // cursor 为上一页最后一条的 postId，为空时从最新开始
+    CursorPageBean<PostVO> getTimeline(UUID userId, Long cursor, Integer size);
+
+    // 好友关系变化后丢弃时间线，下次读取时重建
+    void invalidate(UUID userId);
+}
@@ -0,0 +1,12 @@
+package com.yychainsaw.service;
+
+import java.util.Date;
+
+public interface TokenRevocationService {
+
+    // 吊销 token，记录保留到 token 自然过期
+    void revoke(String tokenId, Date expiresAt);
+
+    // 只查本地名单，不访问 Redis
+    boolean isRevoked(String tokenId);
+}
@@ -0,0 +1,28 @@
+package com.yychainsaw.service;
+
+import com.yychainsaw.pojo.dto.UploadPresignDTO;
+import com.yychainsaw.pojo.vo.PresignedUploadVO;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.InputStream;
+import java.util.List;
+
+public interface UploadService {
+
+    String uploadImage(MultipartFile file);
+
+    // 并发上传，返回顺序与入参一致
+    List<String> uploadImages(MultipartFile[] files);
+
+    // 请求体直接就是文件内容，边读边传，不经过 multipart 临时文件
+    String uploadImageStream(String filename, String contentType, long size, InputStream in);
+
+    // 直传第一步: 校验文件信息并签发短时上传凭证
+    PresignedUploadVO presignImageUpload(UploadPresignDTO dto);
+
+    // 直传第二步: 客户端上传完成后校验对象 (存在、大小、文件头) 并返回访问地址
+    String completeImageUpload(String objectName);
+
+    // 由上传返回的原图地址得到列表页缩略图地址，不是本服务上传的图片原样返回
+    String getThumbnailUrl(String imageUrl);
+}
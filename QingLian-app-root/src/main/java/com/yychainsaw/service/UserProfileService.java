@@ -0,0 +1,18 @@
+package com.yychainsaw.service;
+
+import com.yychainsaw.pojo.vo.UserBriefVO;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.UUID;
+
+public interface UserProfileService {
+
+    // 用户不存在时返回 null
+    UserBriefVO getProfile(UUID userId);
+
+    Map<UUID, UserBriefVO> getProfiles(Collection<UUID> userIds);
+
+    // 资料变更后调用，同时通知其他节点
+    void evict(UUID userId);
+}
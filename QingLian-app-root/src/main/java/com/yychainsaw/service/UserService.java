@@ -26,8 +26,11 @@ public interface UserService {
 
     void deleteUser();
 
+    // 只记录到内存，由 flushLastLoginTimes 定时合并写库
     void updateLastLoginTime(UUID userId);
 
+    void flushLastLoginTimes();
+
     List<UserVO> searchUsers(String trim);
 
     List<Map<String, Object>> getGenderWeightStats();
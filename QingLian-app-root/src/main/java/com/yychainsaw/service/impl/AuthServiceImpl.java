@@ -1,14 +1,19 @@
 package com.yychainsaw.service.impl;
 
+import com.auth0.jwt.exceptions.JWTVerificationException;
+import com.auth0.jwt.interfaces.DecodedJWT;
+import com.yychainsaw.pojo.AuthProperties;
 import com.yychainsaw.pojo.dto.UserLoginDTO;
 import com.yychainsaw.pojo.dto.UserRegisterDTO;
 import com.yychainsaw.pojo.entity.User;
 import com.yychainsaw.pojo.vo.TokenVO;
 import com.yychainsaw.pojo.vo.UserVO;
 import com.yychainsaw.service.AuthService;
+import com.yychainsaw.service.LoginRateLimitService;
+import com.yychainsaw.service.PasswordHashService;
+import com.yychainsaw.service.TokenRevocationService;
 import com.yychainsaw.service.UserService;
 import com.yychainsaw.utils.JwtUtil;
-import com.yychainsaw.utils.Md5Util;
 import org.springframework.beans.BeanUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.redis.core.StringRedisTemplate;
@@ -24,6 +29,14 @@ public class AuthServiceImpl implements AuthService {
     private UserService userService;
     @Autowired
     private StringRedisTemplate stringRedisTemplate;
+    @Autowired
+    private TokenRevocationService tokenRevocationService;
+    @Autowired
+    private PasswordHashService passwordHashService;
+    @Autowired
+    private LoginRateLimitService loginRateLimitService;
+    @Autowired
+    private AuthProperties authProperties;
 
     @Override
     @Transactional
@@ -34,19 +47,23 @@ public class AuthServiceImpl implements AuthService {
 
         User user = new User();
         BeanUtils.copyProperties(dto, user);
-        user.setPasswordHash(Md5Util.getMD5String(dto.getPassword()));
+        user.setPasswordHash(passwordHashService.hash(dto.getPassword()));
         user.setGender("OTHER");
 
         userService.registerUser(user);
     }
 
     @Override
-    public TokenVO login(UserLoginDTO loginDTO) {
+    public TokenVO login(UserLoginDTO loginDTO, String clientIp) {
+        // 先限流再查库和算哈希，失败的尝试同样消耗令牌
+        loginRateLimitService.acquire(loginDTO.getUsername(), clientIp);
+
         User user = userService.findByUsername(loginDTO.getUsername());
 
-        if (user == null || !user.getPasswordHash().equals(Md5Util.getMD5String(loginDTO.getPassword()))) {
+        if (user == null || !passwordHashService.matches(loginDTO.getPassword(), user.getPasswordHash())) {
             throw new RuntimeException("用户名或密码错误");
         }
+        passwordHashService.upgradeIfNeeded(user.getUserId(), loginDTO.getPassword(), user.getPasswordHash());
 
         Map<String, Object> claims = new HashMap<>();
         claims.put("id", String.valueOf(user.getUserId()));
@@ -65,17 +82,32 @@ public class AuthServiceImpl implements AuthService {
 
     @Override
     public void logout(String token) {
+        token = stripBearer(token);
         stringRedisTemplate.delete(token);
+        try {
+            revoke(JwtUtil.verify(token));
+        } catch (JWTVerificationException ignored) {
+            // 已过期或无效的 token 本来就无法通过校验，无需吊销
+        }
     }
 
     @Override
     public String refreshToken(String oldToken) {
-        String value = stringRedisTemplate.opsForValue().get(oldToken);
-        if (value == null) {
+        oldToken = stripBearer(oldToken);
+        DecodedJWT oldJwt;
+        try {
+            oldJwt = JwtUtil.verify(oldToken);
+        } catch (JWTVerificationException e) {
+            throw new RuntimeException("无效的token");
+        }
+        if (tokenRevocationService.isRevoked(JwtUtil.tokenId(oldJwt))) {
+            throw new RuntimeException("无效的token");
+        }
+        if (!authProperties.isStateless() && stringRedisTemplate.opsForValue().get(oldToken) == null) {
             throw new RuntimeException("无效的token");
         }
 
-        Map<String, Object> oldClaims = JwtUtil.parseToken(oldToken);
+        Map<String, Object> oldClaims = oldJwt.getClaim("claims").asMap();
         Map<String, Object> newClaims = new HashMap<>();
 
         if (oldClaims.get("id") != null) {
@@ -89,7 +121,20 @@ public class AuthServiceImpl implements AuthService {
 
         stringRedisTemplate.delete(oldToken);
         stringRedisTemplate.opsForValue().set(newToken, newToken, 60 * 60 * 24 * 30);
+        // 旧 token 在自然过期前仍能通过签名校验，必须推送到各节点的吊销名单
+        revoke(oldJwt);
 
         return newToken;
     }
+
+    private void revoke(DecodedJWT jwt) {
+        tokenRevocationService.revoke(JwtUtil.tokenId(jwt), jwt.getExpiresAt());
+    }
+
+    private String stripBearer(String token) {
+        if (token != null && token.startsWith("Bearer ")) {
+            return token.substring(7);
+        }
+        return token;
+    }
 }
@@ -0,0 +1,226 @@
+package com.yychainsaw.service.impl;
+
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.yychainsaw.mapper.MessageMapper;
+import com.yychainsaw.pojo.entity.Message;
+import com.yychainsaw.pojo.vo.BadgeVO;
+import com.yychainsaw.service.BadgeService;
+import com.yychainsaw.service.MessageDeliveryService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 角标计数
+ * Redis Hash: badge:{userId} -> {messages: 私聊未读数, _init: 1}
+ * 首次读取时用 COUNT 初始化并设置过期，之后 HINCRBY 增量维护；过期后下次读取重新对账。
+ * 初始化期间 (_pending 存在) 到达的增量先记在 _early:{badge}，写入 COUNT 结果时在同一个脚本里合并，
+ * 不会被 COUNT 结果覆盖。增量在事务提交后才应用，恰好在提交和应用之间开始的初始化会把这一次计两次，
+ * 偏差在过期对账时消除。
+ * 变化量按用户在本机合并，每 coalesceMs 最多推送一帧。
+ */
+@Slf4j
+@Service
+public class BadgeServiceImpl implements BadgeService {
+
+    private static final String BADGES_DESTINATION = "/queue/badges";
+    // 标记该用户的计数已经从数据库初始化过
+    private static final String INIT_FIELD = "_init";
+    // 正在初始化，值为本次初始化的 token
+    private static final String PENDING_FIELD = "_pending";
+    // 初始化期间缓存的增量: _early:{badge}
+    private static final String EARLY_PREFIX = "_early:";
+    // 初始化中途进程退出时 _pending 的存活时间
+    private static final long PENDING_TTL_SECONDS = 60;
+    private static final List<String> BADGES = List.of(MESSAGES);
+
+    // 已初始化则累加；正在初始化则记到 _early，等初始化合并；都不是则丢弃，等首次读取时从数据库算
+    private static final DefaultRedisScript<Long> INCREMENT_SCRIPT = new DefaultRedisScript<>("""
+            if redis.call('HEXISTS', KEYS[1], ARGV[1]) == 1 then
+                return redis.call('HINCRBY', KEYS[1], ARGV[4], ARGV[5])
+            end
+            if redis.call('HEXISTS', KEYS[1], ARGV[2]) == 1 then
+                redis.call('HINCRBY', KEYS[1], ARGV[3] .. ARGV[4], ARGV[5])
+            end
+            return 0
+            """, Long.class);
+
+    // 开始初始化: 已初始化返回 1；否则清掉上一次没完成的初始化，登记本次 token，返回 0
+    private static final DefaultRedisScript<Long> BEGIN_INIT_SCRIPT = new DefaultRedisScript<>("""
+            if redis.call('HEXISTS', KEYS[1], ARGV[1]) == 1 then
+                return 1
+            end
+            redis.call('DEL', KEYS[1])
+            redis.call('HSET', KEYS[1], ARGV[2], ARGV[3])
+            redis.call('EXPIRE', KEYS[1], ARGV[4])
+            return 0
+            """, Long.class);
+
+    // 写入 COUNT 结果并合并期间的增量: 已被别人初始化或 token 被后来的初始化替换时不写，返回 0
+    // ARGV: _init, _pending, token, _early 前缀, 过期秒数, badge1, count1, badge2, count2 ...
+    private static final DefaultRedisScript<Long> FINISH_INIT_SCRIPT = new DefaultRedisScript<>("""
+            if redis.call('HEXISTS', KEYS[1], ARGV[1]) == 1 or redis.call('HGET', KEYS[1], ARGV[2]) ~= ARGV[3] then
+                return 0
+            end
+            for i = 6, #ARGV, 2 do
+                local early = tonumber(redis.call('HGET', KEYS[1], ARGV[4] .. ARGV[i]) or '0')
+                redis.call('HSET', KEYS[1], ARGV[i], tonumber(ARGV[i + 1]) + early)
+                redis.call('HDEL', KEYS[1], ARGV[4] .. ARGV[i])
+            end
+            redis.call('HDEL', KEYS[1], ARGV[2])
+            redis.call('HSET', KEYS[1], ARGV[1], '1')
+            redis.call('EXPIRE', KEYS[1], ARGV[5])
+            return 1
+            """, Long.class);
+
+    @Autowired
+    private StringRedisTemplate redisTemplate;
+    @Autowired
+    private MessageMapper messageMapper;
+    @Autowired
+    private MessageDeliveryService messageDeliveryService;
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${qinglian.badge.ttl-hours:24}")
+    private long ttlHours;
+
+    // userId -> 待推送的变化量，只在 compute / remove 中读写
+    private final Map<UUID, Map<String, Long>> pendingDeltas = new ConcurrentHashMap<>();
+
+    private Counter eventCounter;
+    private Counter frameCounter;
+
+    @PostConstruct
+    public void init() {
+        eventCounter = meterRegistry.counter("qinglian.badge.events");
+        frameCounter = meterRegistry.counter("qinglian.badge.frames");
+    }
+
+    private String getBadgeKey(UUID userId) {
+        return "badge:" + userId;
+    }
+
+    @Override
+    public void add(UUID userId, String badge, long delta) {
+        if (delta == 0) {
+            return;
+        }
+        // 在事务中调用时等提交后再改计数，回滚不会留下多余的未读
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    apply(userId, badge, delta);
+                }
+            });
+        } else {
+            apply(userId, badge, delta);
+        }
+    }
+
+    private void apply(UUID userId, String badge, long delta) {
+        eventCounter.increment();
+        try {
+            redisTemplate.execute(INCREMENT_SCRIPT, List.of(getBadgeKey(userId)),
+                    INIT_FIELD, PENDING_FIELD, EARLY_PREFIX, badge, String.valueOf(delta));
+        } catch (Exception e) {
+            log.warn("角标计数更新失败, userId: {}", userId, e);
+        }
+        pendingDeltas.compute(userId, (key, deltas) -> {
+            if (deltas == null) {
+                deltas = new HashMap<>();
+            }
+            deltas.merge(badge, delta, Long::sum);
+            return deltas;
+        });
+    }
+
+    @Override
+    public Map<String, Long> getBadges(UUID userId) {
+        Map<String, Long> values = readValues(userId);
+        return values != null ? values : initBadges(userId);
+    }
+
+    // 未初始化时返回 null
+    private Map<String, Long> readValues(UUID userId) {
+        List<Object> fields = new ArrayList<>();
+        fields.add(INIT_FIELD);
+        fields.addAll(BADGES);
+        List<Object> values = redisTemplate.opsForHash().multiGet(getBadgeKey(userId), fields);
+        if (values.get(0) == null) {
+            return null;
+        }
+        Map<String, Long> result = new HashMap<>();
+        for (int i = 0; i < BADGES.size(); i++) {
+            Object value = values.get(i + 1);
+            result.put(BADGES.get(i), value == null ? 0 : Math.max(0, Long.parseLong(value.toString())));
+        }
+        return result;
+    }
+
+    private Map<String, Long> initBadges(UUID userId) {
+        String key = getBadgeKey(userId);
+        String token = UUID.randomUUID().toString();
+        Long initialized = redisTemplate.execute(BEGIN_INIT_SCRIPT, List.of(key),
+                INIT_FIELD, PENDING_FIELD, token, String.valueOf(PENDING_TTL_SECONDS));
+        if (Long.valueOf(1).equals(initialized)) {
+            Map<String, Long> values = readValues(userId);
+            if (values != null) {
+                return values;
+            }
+        }
+
+        // SQL #6
+        QueryWrapper<Message> wrapper = new QueryWrapper<>();
+        wrapper.eq("receiver_id", userId).eq("is_read", false);
+        Long unread = messageMapper.selectCount(wrapper);
+
+        Long finished = redisTemplate.execute(FINISH_INIT_SCRIPT, List.of(key),
+                INIT_FIELD, PENDING_FIELD, token, EARLY_PREFIX, String.valueOf(Duration.ofHours(ttlHours).toSeconds()),
+                MESSAGES, String.valueOf(unread));
+        if (Long.valueOf(1).equals(finished)) {
+            Map<String, Long> values = readValues(userId);
+            if (values != null) {
+                return values;
+            }
+        }
+        // 并发的初始化会写入自己的结果，这里直接返回本次 COUNT
+        return Map.of(MESSAGES, unread);
+    }
+
+    // 合并窗口到期，把每个用户累计的变化量作为一帧推送
+    @Scheduled(fixedDelayString = "${qinglian.badge.coalesce-ms:250}")
+    public void flush() {
+        for (UUID userId : new ArrayList<>(pendingDeltas.keySet())) {
+            Map<String, Long> deltas = pendingDeltas.remove(userId);
+            if (deltas == null) {
+                continue;
+            }
+            deltas.values().removeIf(delta -> delta == 0);
+            if (deltas.isEmpty()) {
+                continue;
+            }
+            try {
+                messageDeliveryService.sendToUser(userId.toString(), BADGES_DESTINATION,
+                        new BadgeVO(deltas, readValues(userId)));
+                frameCounter.increment();
+            } catch (Exception e) {
+                log.warn("角标推送失败, userId: {}", userId, e);
+            }
+        }
+    }
+}
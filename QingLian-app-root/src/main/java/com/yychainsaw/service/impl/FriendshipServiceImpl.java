@@ -6,36 +6,45 @@ import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.yychainsaw.mapper.FriendshipMapper;
-import com.yychainsaw.mapper.UserMapper;
 import com.yychainsaw.pojo.entity.Friendship;
-import com.yychainsaw.pojo.entity.User;
 import com.yychainsaw.pojo.vo.FriendListVO;
 import com.yychainsaw.pojo.vo.FriendPlanVO;
 import com.yychainsaw.pojo.vo.FriendRankingVO;
+import com.yychainsaw.pojo.vo.UserBriefVO;
 import com.yychainsaw.service.FriendshipService;
+import com.yychainsaw.service.MessageDeliveryService;
+import com.yychainsaw.service.PresenceService;
+import com.yychainsaw.service.TimelineService;
+import com.yychainsaw.service.UserProfileService;
 import com.yychainsaw.utils.ThreadLocalUtil;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.redis.core.StringRedisTemplate;
-import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.stereotype.Service;
 
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 
 @Service
 public class FriendshipServiceImpl implements FriendshipService {
     @Autowired
     private FriendshipMapper friendshipMapper;
     @Autowired
-    private UserMapper userMapper;
+    private UserProfileService userProfileService;
     @Autowired
-    private SimpMessagingTemplate messagingTemplate;
+    private MessageDeliveryService messageDeliveryService;
     @Autowired
     private StringRedisTemplate redisTemplate;
     @Autowired
     private ObjectMapper objectMapper;
+    @Autowired
+    private TimelineService timelineService;
+    @Autowired
+    private PresenceService presenceService;
 
     private String getFriendListKey(UUID userId) {
         return "user:friends:" + userId;
@@ -77,18 +86,8 @@ public class FriendshipServiceImpl implements FriendshipService {
         friendshipMapper.insert(friendship);
 
 
-        User friend = userMapper.selectById(friendId);
-
-        if (friend != null) {
-            String targetUsername = friend.getUsername();
-
-            messagingTemplate.convertAndSendToUser(
-                    targetUsername,
-                    "/queue/messages",
-                    "收到新的好友申请"
-            );
-            System.out.println("WebSocket消息已发送给用户: " + targetUsername);
-        }
+        // WebSocket Principal 名是 userId，不能按 username 推送
+        messageDeliveryService.sendReliableToUser(friendId.toString(), "收到新的好友申请");
     }
 
     @Override
@@ -108,15 +107,9 @@ public class FriendshipServiceImpl implements FriendshipService {
         if (rows > 0) {
             redisTemplate.delete(getFriendListKey(userId));
             redisTemplate.delete(getFriendListKey(friendId));
-            User requester = userMapper.selectById(friendId);
-            if (requester != null) {
-                messagingTemplate.convertAndSendToUser(
-                        requester.getUsername(), // 发给申请人
-                        "/queue/messages",
-                        "你的好友请求已被接受"
-                );
-                System.out.println("WebSocket消息已发送给申请人: " + requester.getUsername());
-            }
+            timelineService.invalidate(userId);
+            timelineService.invalidate(friendId);
+            messageDeliveryService.sendReliableToUser(friendId.toString(), "你的好友请求已被接受"); // 发给申请人
         } else {
             System.out.println("警告: 未找到对应的好友申请记录，无法接受。");
         }
@@ -136,6 +129,8 @@ public class FriendshipServiceImpl implements FriendshipService {
 
         redisTemplate.delete(getFriendListKey(userId));
         redisTemplate.delete(getFriendListKey(friendId));
+        timelineService.invalidate(userId);
+        timelineService.invalidate(friendId);
     }
 
     @Override
@@ -158,7 +153,7 @@ public class FriendshipServiceImpl implements FriendshipService {
         String cacheValue = redisTemplate.opsForValue().get(key);
         if (StringUtils.isNotBlank(cacheValue)) {
             try {
-                return objectMapper.readValue(cacheValue, new TypeReference<List<FriendListVO>>() {});
+                return fillOnline(objectMapper.readValue(cacheValue, new TypeReference<List<FriendListVO>>() {}));
             } catch (JsonProcessingException e) {
                 e.printStackTrace();
             }
@@ -172,6 +167,14 @@ public class FriendshipServiceImpl implements FriendshipService {
             e.printStackTrace();
         }
 
+        return fillOnline(friends);
+    }
+
+    // 在线状态变化快，不进好友列表缓存，每次读取时批量查询
+    private List<FriendListVO> fillOnline(List<FriendListVO> friends) {
+        Set<UUID> online = presenceService.getOnlineUsers(
+                friends.stream().map(FriendListVO::getUserId).collect(Collectors.toList()));
+        friends.forEach(friend -> friend.setOnline(online.contains(friend.getUserId())));
         return friends;
     }
 
@@ -180,7 +183,8 @@ public class FriendshipServiceImpl implements FriendshipService {
         UUID userId = ThreadLocalUtil.getCurrentUserId();
         QueryWrapper<Friendship> wrapper = new QueryWrapper<>();
 
-        wrapper.eq("friend_id", userId).eq("status", "PENDING");
+        // 最新的申请排在前面
+        wrapper.eq("friend_id", userId).eq("status", "PENDING").orderByDesc("created_at");
         List<Friendship> pendingRequests = friendshipMapper.selectList(wrapper);
 
         if (pendingRequests.isEmpty()) {
@@ -191,9 +195,9 @@ public class FriendshipServiceImpl implements FriendshipService {
                 .map(Friendship::getUserId)
                 .collect(java.util.stream.Collectors.toList());
 
-        List<User> requesters = userMapper.selectBatchIds(requesterIds);
-
-        return requesters.stream().map(user -> {
+        // getProfiles 返回的 Map 无序，按申请顺序取出
+        Map<UUID, UserBriefVO> profiles = userProfileService.getProfiles(requesterIds);
+        return requesterIds.stream().map(profiles::get).filter(Objects::nonNull).map(user -> {
             FriendListVO vo = new FriendListVO();
             vo.setUserId(user.getUserId());
             vo.setUsername(user.getUsername());
@@ -7,32 +7,30 @@ import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.yychainsaw.mapper.ChatGroupMapper;
 import com.yychainsaw.mapper.GroupMemberMapper;
-import com.yychainsaw.mapper.MessageMapper;
-import com.yychainsaw.mapper.UserMapper;
 import com.yychainsaw.pojo.dto.GroupCreateDTO;
 import com.yychainsaw.pojo.entity.ChatGroup;
 import com.yychainsaw.pojo.entity.GroupMember;
-import com.yychainsaw.pojo.entity.Message;
 import com.yychainsaw.pojo.vo.GroupListVO;
 import com.yychainsaw.service.GroupService; // 需自行创建接口定义
+import com.yychainsaw.service.GroupUnreadService;
+import com.yychainsaw.service.PresenceService;
+import com.yychainsaw.service.UserProfileService;
 import com.yychainsaw.utils.ThreadLocalUtil;
-import org.springframework.beans.BeanUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
-import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 @Service
 public class GroupServiceImpl implements GroupService {
-    @Autowired
-    private MessageMapper messageMapper;
     @Autowired
     private ChatGroupMapper chatGroupMapper;
     @Autowired
@@ -42,13 +40,17 @@ public class GroupServiceImpl implements GroupService {
     @Autowired
     private ObjectMapper objectMapper;
     @Autowired
-    private UserMapper userMapper;
+    private UserProfileService userProfileService;
+    @Autowired
+    private GroupUnreadService groupUnreadService;
+    @Autowired
+    private PresenceService presenceService;
 
     @Override
     @Transactional(rollbackFor = Exception.class) // 确保有事务注解
     public void addMember(Long groupId, UUID userId) {
 
-        if (userMapper.selectById(userId) == null) {
+        if (userProfileService.getProfile(userId) == null) {
            throw new RuntimeException("用户不存在");
         }
 
@@ -101,6 +103,15 @@ public class GroupServiceImpl implements GroupService {
         return members;
     }
 
+    @Override
+    public List<GroupMember> getGroupMembersWithOnline(Long groupId) {
+        List<GroupMember> members = getGroupMembers(groupId);
+        Set<UUID> online = presenceService.getOnlineUsers(
+                members.stream().map(GroupMember::getUserId).collect(Collectors.toList()));
+        members.forEach(member -> member.setOnline(online.contains(member.getUserId())));
+        return members;
+    }
+
     @Override
     @Transactional(rollbackFor = Exception.class)
     public ChatGroup createGroup(GroupCreateDTO dto) {
@@ -129,49 +140,21 @@ public class GroupServiceImpl implements GroupService {
     @Override
     public List<GroupListVO> getUserGroups() {
         UUID userId = ThreadLocalUtil.getCurrentUserId();
-        // 1. 查询该用户参与的所有成员记录
-        QueryWrapper<GroupMember> query = new QueryWrapper<>();
-        query.eq("user_id", userId);
-        List<GroupMember> members = groupMemberMapper.selectList(query);
+        // 1. 群信息 + 最后一条消息 (单条 SQL)
+        List<GroupListVO> resultList = chatGroupMapper.selectUserGroupList(userId);
 
-        if (members.isEmpty()) {
-            return new ArrayList<>();
+        if (resultList.isEmpty()) {
+            return resultList;
         }
 
-        // 2. 提取群组 ID
-        List<Long> groupIds = members.stream()
-                .map(GroupMember::getGroupId)
+        // 2. 未读数取自增量维护的 Redis 计数器 (一次 HMGET)
+        List<Long> groupIds = resultList.stream()
+                .map(GroupListVO::getGroupId)
                 .collect(Collectors.toList());
+        Map<Long, Integer> unreadCounts = groupUnreadService.getUnreadCounts(userId, groupIds);
 
-        // 3. 查询群组基本信息
-        List<ChatGroup> groups = chatGroupMapper.selectBatchIds(groupIds);
-
-        // 4. 【核心修改】封装成 VO 并填充 lastMessage
-        List<GroupListVO> resultList = new ArrayList<>();
-
-        for (ChatGroup group : groups) {
-            GroupListVO vo = new GroupListVO();
-            BeanUtils.copyProperties(group, vo); // 复制基本属性
-
-            // --- 查询该群最后一条消息 ---
-            QueryWrapper<Message> msgQuery = new QueryWrapper<>();
-            msgQuery.eq("group_id", group.getGroupId())
-                    .orderByDesc("sent_at") // 按时间倒序
-                    .last("LIMIT 1");       // 只取第一条
-
-            Message lastMsg = messageMapper.selectOne(msgQuery);
-
-            if (lastMsg != null) {
-                vo.setLastMessage(lastMsg.getContent());
-                vo.setLastMessageTime(lastMsg.getSentAt().toString()); // 或者格式化一下
-            } else {
-                vo.setLastMessage(""); // 无消息
-            }
-
-            // (可选) 这里还可以查询未读数 unreadCount，逻辑比较复杂，需要对比 GroupReadStatus 表
-            vo.setUnreadCount(0); // 暂时置为 0
-
-            resultList.add(vo);
+        for (GroupListVO vo : resultList) {
+            vo.setUnreadCount(unreadCounts.getOrDefault(vo.getGroupId(), 0));
         }
         return resultList;
     }
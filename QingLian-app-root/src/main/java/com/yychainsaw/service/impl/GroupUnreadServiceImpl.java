@@ -0,0 +1,131 @@
+package com.yychainsaw.service.impl;
+
+import com.yychainsaw.mapper.MessageMapper;
+import com.yychainsaw.pojo.vo.GroupUnreadVO;
+import com.yychainsaw.service.GroupUnreadService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * 群未读数计数器
+ * Redis Hash: group:unread:{userId} -> {groupId: 未读数}
+ * 发送时 HINCRBY，已读时按水位精确重算，定时任务对有新消息的群做对账
+ */
+@Service
+public class GroupUnreadServiceImpl implements GroupUnreadService {
+
+    private static final String DIRTY_GROUPS_KEY = "group:unread:dirty";
+    // 标记该用户的计数已经从数据库初始化过
+    private static final String INIT_FIELD = "_init";
+
+    @Autowired
+    private StringRedisTemplate redisTemplate;
+    @Autowired
+    private MessageMapper messageMapper;
+
+    @Value("${qinglian.group-unread.reconcile-batch-size:50}")
+    private int reconcileBatchSize;
+
+    private String getUnreadKey(UUID userId) {
+        return "group:unread:" + userId;
+    }
+
+    @Override
+    public void onGroupMessage(Long groupId, UUID senderId, Collection<UUID> memberIds) {
+        String field = String.valueOf(groupId);
+        redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection conn = (StringRedisConnection) connection;
+            for (UUID memberId : memberIds) {
+                if (!memberId.equals(senderId)) {
+                    conn.hIncrBy(getUnreadKey(memberId), field, 1);
+                }
+            }
+            conn.sAdd(DIRTY_GROUPS_KEY, field);
+            return null;
+        });
+    }
+
+    @Override
+    public void onGroupRead(Long groupId, UUID userId, Long lastMsgId) {
+        // 走 (group_id, msg_id) 索引的范围计数，正常情况下水位之后没有消息
+        Long unread = messageMapper.countGroupUnreadAfter(groupId, userId, lastMsgId);
+        redisTemplate.opsForHash().put(getUnreadKey(userId), String.valueOf(groupId), String.valueOf(unread));
+    }
+
+    @Override
+    public Map<Long, Integer> getUnreadCounts(UUID userId, List<Long> groupIds) {
+        if (groupIds.isEmpty()) {
+            return new HashMap<>();
+        }
+        String key = getUnreadKey(userId);
+
+        List<Object> fields = new ArrayList<>();
+        fields.add(INIT_FIELD);
+        groupIds.forEach(id -> fields.add(String.valueOf(id)));
+        List<Object> values = redisTemplate.opsForHash().multiGet(key, fields);
+
+        if (values.get(0) == null) {
+            // 冷启动: 从数据库按水位计算该用户所有群的未读数
+            return initUnreadCounts(userId);
+        }
+
+        Map<Long, Integer> result = new HashMap<>();
+        for (int i = 0; i < groupIds.size(); i++) {
+            Object value = values.get(i + 1);
+            result.put(groupIds.get(i), value == null ? 0 : Math.max(0, Integer.parseInt(value.toString())));
+        }
+        return result;
+    }
+
+    private Map<Long, Integer> initUnreadCounts(UUID userId) {
+        List<GroupUnreadVO> rows = messageMapper.selectGroupUnreadByUser(userId);
+
+        Map<String, String> hash = new HashMap<>();
+        Map<Long, Integer> result = new HashMap<>();
+        for (GroupUnreadVO row : rows) {
+            hash.put(String.valueOf(row.getGroupId()), String.valueOf(row.getUnreadCount()));
+            result.put(row.getGroupId(), row.getUnreadCount());
+        }
+        hash.put(INIT_FIELD, "1");
+        redisTemplate.opsForHash().putAll(getUnreadKey(userId), hash);
+        return result;
+    }
+
+    @Override
+    @Scheduled(fixedDelayString = "${qinglian.group-unread.reconcile-interval-ms:60000}")
+    public void reconcileDirtyGroups() {
+        // 先出队再查询，查询期间新到的消息会重新加入集合
+        List<String> dirty = redisTemplate.opsForSet().pop(DIRTY_GROUPS_KEY, reconcileBatchSize);
+        if (dirty == null || dirty.isEmpty()) {
+            return;
+        }
+
+        List<Long> groupIds = dirty.stream().map(Long::valueOf).collect(Collectors.toList());
+        List<GroupUnreadVO> rows;
+        try {
+            rows = messageMapper.selectGroupUnreadByGroups(groupIds);
+        } catch (Exception e) {
+            // 数据库异常时放回集合，下一轮重试
+            redisTemplate.opsForSet().add(DIRTY_GROUPS_KEY, dirty.toArray(new String[0]));
+            throw e;
+        }
+
+        // 对账期间新到的消息会把群重新加入 dirty 集合，下一轮再修正
+        redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection conn = (StringRedisConnection) connection;
+            for (GroupUnreadVO row : rows) {
+                conn.hSet(getUnreadKey(row.getUserId()), String.valueOf(row.getGroupId()),
+                        String.valueOf(row.getUnreadCount()));
+            }
+            return null;
+        });
+    }
+}
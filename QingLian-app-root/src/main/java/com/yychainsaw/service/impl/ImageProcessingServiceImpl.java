@@ -0,0 +1,267 @@
+package com.yychainsaw.service.impl;
+
+import com.yychainsaw.pojo.ImageProcessingProperties;
+import com.yychainsaw.pojo.ProcessedImage;
+import com.yychainsaw.service.ImageProcessingService;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.*;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 上传图片处理
+ * JPEG / PNG 解码后重新编码 (ImageIO 写出时不带 EXIF/GPS 等元数据)，先按 EXIF 方向摆正，
+ * 再把主图限制在 maxDimension 以内；各尺寸缩略图在独立的 CPU 线程池中并发生成。
+ */
+@Service
+public class ImageProcessingServiceImpl implements ImageProcessingService {
+
+    @Autowired
+    private ImageProcessingProperties properties;
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private ExecutorService executor;
+    private Timer processTimer;
+
+    @PostConstruct
+    public void init() {
+        AtomicInteger threadIndex = new AtomicInteger();
+        executor = Executors.newFixedThreadPool(properties.getThreads(), r -> {
+            Thread t = new Thread(r, "image-process-" + threadIndex.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        ExecutorServiceMetrics.monitor(meterRegistry, executor, "imageProcess");
+        processTimer = Timer.builder("qinglian.image.process")
+                .description("单张图片处理耗时 (含全部缩略图)")
+                .register(meterRegistry);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    @Override
+    public ProcessedImage process(byte[] source, String extension) {
+        return processTimer.record(() -> doProcess(source, extension));
+    }
+
+    private ProcessedImage doProcess(byte[] source, String extension) {
+        boolean jpeg = ".jpg".equals(extension) || ".jpeg".equals(extension);
+        boolean png = ".png".equals(extension);
+        BufferedImage image = (jpeg || png) ? decode(source) : null;
+        if (image == null) {
+            return passthrough(source, extension);
+        }
+
+        if (jpeg) {
+            image = applyOrientation(image, readExifOrientation(source));
+        }
+        BufferedImage decoded = image;
+
+        Future<byte[]> main = executor.submit(() -> encode(resize(decoded, properties.getMaxDimension()), jpeg));
+        Map<String, Future<byte[]>> variantFutures = new LinkedHashMap<>();
+        properties.getVariants().forEach((name, size) ->
+                variantFutures.put(name, executor.submit(() -> encode(resize(decoded, size), jpeg))));
+
+        try {
+            Map<String, byte[]> variants = new LinkedHashMap<>();
+            for (Map.Entry<String, Future<byte[]>> entry : variantFutures.entrySet()) {
+                variants.put(entry.getKey(), entry.getValue().get());
+            }
+            return new ProcessedImage(main.get(), jpeg ? "image/jpeg" : "image/png", variants);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("图片处理被中断");
+        } catch (ExecutionException e) {
+            throw new RuntimeException("图片处理失败: " + e.getCause().getMessage());
+        }
+    }
+
+    private ProcessedImage passthrough(byte[] source, String extension) {
+        Map<String, byte[]> variants = new LinkedHashMap<>();
+        properties.getVariants().keySet().forEach(name -> variants.put(name, source));
+        String contentType = switch (extension) {
+            case ".gif" -> "image/gif";
+            case ".webp" -> "image/webp";
+            case ".png" -> "image/png";
+            default -> "image/jpeg";
+        };
+        return new ProcessedImage(source, contentType, variants);
+    }
+
+    // 解码前先只读文件头里的宽高: 几 MB 的 PNG 可以声明 30000x30000，解码后占用数 GB 内存
+    private BufferedImage decode(byte[] source) {
+        try (ImageInputStream in = ImageIO.createImageInputStream(new ByteArrayInputStream(source))) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+            if (!readers.hasNext()) {
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(in, true, true);
+                long pixels = (long) reader.getWidth(0) * reader.getHeight(0);
+                if (pixels > properties.getMaxPixels()) {
+                    throw new IllegalArgumentException("图片分辨率过大，最多支持 " + properties.getMaxPixels() / 1_000_000 + " 百万像素");
+                }
+                return reader.read(0);
+            } finally {
+                reader.dispose();
+            }
+        } catch (IOException e) {
+            throw new IllegalArgumentException("无法识别的图片文件");
+        }
+    }
+
+    // 等比缩小到长边不超过 maxSize，已经足够小则直接返回；每次最多缩小一半，避免一步缩放产生锯齿
+    private BufferedImage resize(BufferedImage image, int maxSize) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        double ratio = (double) maxSize / Math.max(width, height);
+        if (ratio >= 1) {
+            return image;
+        }
+        int targetWidth = Math.max(1, (int) Math.round(width * ratio));
+        int targetHeight = Math.max(1, (int) Math.round(height * ratio));
+
+        BufferedImage current = image;
+        do {
+            width = Math.max(targetWidth, width / 2);
+            height = Math.max(targetHeight, height / 2);
+            current = draw(current, width, height, new AffineTransform(
+                    (double) width / current.getWidth(), 0, 0, (double) height / current.getHeight(), 0, 0));
+        } while (width != targetWidth || height != targetHeight);
+        return current;
+    }
+
+    private BufferedImage draw(BufferedImage source, int width, int height, AffineTransform transform) {
+        int type = source.getColorModel().hasAlpha() ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB;
+        return draw(source, width, height, transform, type);
+    }
+
+    private BufferedImage draw(BufferedImage source, int width, int height, AffineTransform transform, int type) {
+        BufferedImage target = new BufferedImage(width, height, type);
+        Graphics2D g = target.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            g.drawImage(source, transform, null);
+        } finally {
+            g.dispose();
+        }
+        return target;
+    }
+
+    private byte[] encode(BufferedImage image, boolean jpeg) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try {
+            if (!jpeg) {
+                ImageIO.write(image, "png", out);
+                return out.toByteArray();
+            }
+            // JPEG 不支持透明通道，统一转成 RGB
+            if (image.getColorModel().hasAlpha()) {
+                image = draw(image, image.getWidth(), image.getHeight(), new AffineTransform(), BufferedImage.TYPE_INT_RGB);
+            }
+            ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+            try (ImageOutputStream ios = ImageIO.createImageOutputStream(out)) {
+                writer.setOutput(ios);
+                ImageWriteParam param = writer.getDefaultWriteParam();
+                param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+                param.setCompressionQuality(properties.getJpegQuality());
+                writer.write(null, new IIOImage(image, null, null), param);
+            } finally {
+                writer.dispose();
+            }
+            return out.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // 按 EXIF Orientation (1~8) 旋转/翻转，使去掉元数据后图片方向仍然正确
+    private BufferedImage applyOrientation(BufferedImage image, int orientation) {
+        if (orientation <= 1 || orientation > 8) {
+            return image;
+        }
+        int w = image.getWidth();
+        int h = image.getHeight();
+        boolean swap = orientation >= 5;
+        AffineTransform t = new AffineTransform();
+        switch (orientation) {
+            case 2 -> { t.translate(w, 0); t.scale(-1, 1); }
+            case 3 -> { t.translate(w, h); t.rotate(Math.PI); }
+            case 4 -> { t.translate(0, h); t.scale(1, -1); }
+            case 5 -> { t.rotate(-Math.PI / 2); t.scale(-1, 1); }
+            case 6 -> { t.translate(h, 0); t.rotate(Math.PI / 2); }
+            case 7 -> { t.translate(h, w); t.scale(-1, -1); t.rotate(-Math.PI / 2); t.scale(-1, 1); }
+            case 8 -> { t.translate(0, w); t.rotate(3 * Math.PI / 2); }
+            default -> { }
+        }
+        return draw(image, swap ? h : w, swap ? w : h, t);
+    }
+
+    // 只解析 JPEG APP1 段中 IFD0 的 Orientation 标签 (0x0112)，解析失败按正常方向处理
+    private int readExifOrientation(byte[] jpeg) {
+        try {
+            int pos = 2; // 跳过 SOI
+            while (pos + 4 <= jpeg.length && (jpeg[pos] & 0xFF) == 0xFF) {
+                int marker = jpeg[pos + 1] & 0xFF;
+                int length = ((jpeg[pos + 2] & 0xFF) << 8) | (jpeg[pos + 3] & 0xFF);
+                if (marker == 0xE1 && length >= 8 && new String(jpeg, pos + 4, 4, "ISO-8859-1").equals("Exif")) {
+                    int tiff = pos + 10;
+                    boolean little = jpeg[tiff] == 'I';
+                    int ifd = tiff + readInt(jpeg, tiff + 4, 4, little);
+                    int entries = readInt(jpeg, ifd, 2, little);
+                    for (int i = 0; i < entries; i++) {
+                        int entry = ifd + 2 + i * 12;
+                        if (readInt(jpeg, entry, 2, little) == 0x0112) {
+                            return readInt(jpeg, entry + 8, 2, little);
+                        }
+                    }
+                    return 1;
+                }
+                if (marker == 0xDA) {
+                    break; // 图像数据开始，后面不会再有 EXIF
+                }
+                pos += 2 + length;
+            }
+        } catch (RuntimeException | IOException ignored) {
+        }
+        return 1;
+    }
+
+    private int readInt(byte[] data, int offset, int bytes, boolean littleEndian) {
+        int value = 0;
+        for (int i = 0; i < bytes; i++) {
+            int b = data[offset + (littleEndian ? bytes - 1 - i : i)] & 0xFF;
+            value = (value << 8) | b;
+        }
+        return value;
+    }
+}
@@ -0,0 +1,188 @@
+package com.yychainsaw.service.impl;
+
+import com.yychainsaw.pojo.FileStorageProperties;
+import com.yychainsaw.pojo.StoredObjectInfo;
+import com.yychainsaw.pojo.vo.PresignedUploadVO;
+import com.yychainsaw.service.FileStorageService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.Map;
+
+/**
+ * 本地磁盘存储 (qinglian.storage.type=local)，离线开发和测试时替代 OSS
+ * 文件由 WebConfig 映射到 localUrlPrefix 下对外访问
+ */
+@Service
+@ConditionalOnProperty(prefix = "qinglian.storage", name = "type", havingValue = "local")
+public class LocalFileStorageService implements FileStorageService {
+
+    @Autowired
+    private FileStorageProperties properties;
+
+    // 直传签名密钥，进程内随机生成 (本地存储只用于单机开发)
+    private final SecretKeySpec signingKey;
+
+    public LocalFileStorageService() {
+        byte[] key = new byte[32];
+        new SecureRandom().nextBytes(key);
+        signingKey = new SecretKeySpec(key, "HmacSHA256");
+    }
+
+    @Override
+    public String store(String objectName, InputStream in, long size, String contentType) {
+        Path target = resolve(objectName);
+        try {
+            Files.createDirectories(target.getParent());
+            // 先写临时文件再改名，读取方不会看到写了一半的文件
+            Path temp = Files.createTempFile(target.getParent(), ".upload-", ".tmp");
+            try {
+                Files.copy(in, temp, StandardCopyOption.REPLACE_EXISTING);
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("文件保存失败: " + e.getMessage());
+        }
+        return getUrl(objectName);
+    }
+
+    @Override
+    public String getUrl(String objectName) {
+        return properties.getLocalUrlPrefix() + "/" + objectName;
+    }
+
+    // 直传对象都在 direct/ 下，地址指向 UploadController 的 PUT /upload/direct/{fileName}，由签名代替登录校验
+    @Override
+    public PresignedUploadVO presignUpload(String objectName, String contentType, long size, Duration ttl) {
+        long expiresAt = System.currentTimeMillis() + ttl.toMillis();
+        String uploadUrl = "/upload/" + objectName
+                + "?expires=" + expiresAt
+                + "&size=" + size
+                + "&signature=" + sign(objectName, contentType, size, expiresAt);
+        return new PresignedUploadVO(objectName, uploadUrl, "PUT", Map.of("Content-Type", contentType), null, expiresAt);
+    }
+
+    // 校验直传签名后保存文件，写入的字节数不能超过申请时声明的 size (已签入 URL)
+    public void acceptPresignedUpload(String objectName, String contentType, long size, long expiresAt,
+                                      String signature, InputStream in) {
+        if (expiresAt < System.currentTimeMillis()) {
+            throw new RuntimeException("上传凭证已过期");
+        }
+        String expected = sign(objectName, contentType, size, expiresAt);
+        if (signature == null || !MessageDigest.isEqual(expected.getBytes(StandardCharsets.UTF_8),
+                signature.getBytes(StandardCharsets.UTF_8))) {
+            throw new RuntimeException("上传凭证无效");
+        }
+        store(objectName, new SizeLimitedInputStream(in, size), size, contentType);
+    }
+
+    @Override
+    public StoredObjectInfo stat(String objectName) {
+        Path path = resolve(objectName);
+        if (!Files.isRegularFile(path)) {
+            return null;
+        }
+        try {
+            return new StoredObjectInfo(Files.size(path), Files.probeContentType(path));
+        } catch (IOException e) {
+            throw new RuntimeException("读取文件失败: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public byte[] readHead(String objectName, int length) {
+        try (InputStream in = Files.newInputStream(resolve(objectName))) {
+            return in.readNBytes(length);
+        } catch (IOException e) {
+            throw new RuntimeException("读取文件失败: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public void delete(String objectName) {
+        try {
+            Files.deleteIfExists(resolve(objectName));
+        } catch (IOException e) {
+            throw new RuntimeException("删除文件失败: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public String getResizedUrl(String objectName, int maxSize) {
+        return null;
+    }
+
+    private Path resolve(String objectName) {
+        Path root = Paths.get(properties.getLocalDir()).toAbsolutePath().normalize();
+        Path target = root.resolve(objectName).normalize();
+        if (!target.startsWith(root)) {
+            throw new IllegalArgumentException("非法的文件名: " + objectName);
+        }
+        return target;
+    }
+
+    private String sign(String objectName, String contentType, long size, long expiresAt) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(signingKey);
+            String payload = objectName + "\n" + contentType + "\n" + size + "\n" + expiresAt;
+            byte[] digest = mac.doFinal(payload.getBytes(StandardCharsets.UTF_8));
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(digest);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // 读到超过 limit 的字节时抛异常，store 会删除临时文件
+    private static class SizeLimitedInputStream extends FilterInputStream {
+        private long remaining;
+
+        SizeLimitedInputStream(InputStream in, long limit) {
+            super(in);
+            this.remaining = limit;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                consume(1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) {
+                consume(n);
+            }
+            return n;
+        }
+
+        private void consume(long n) throws IOException {
+            remaining -= n;
+            if (remaining < 0) {
+                throw new IOException("上传内容超过申请的大小");
+            }
+        }
+    }
+}
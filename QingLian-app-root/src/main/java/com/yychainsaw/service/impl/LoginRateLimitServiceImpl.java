@@ -0,0 +1,136 @@
+package com.yychainsaw.service.impl;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.yychainsaw.service.LoginRateLimitService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * 登录限流: 用户名、IP 各一个令牌桶，状态放在 Redis (login:bucket:*)，多节点共享。
+ * 被拒绝时 Redis 返回还需等待的毫秒数，本地记下解封时间，期间同一个 key 的请求直接拒绝，不再访问 Redis。
+ * Redis 不可用时放行，避免限流组件本身导致无法登录。
+ */
+@Slf4j
+@Service
+public class LoginRateLimitServiceImpl implements LoginRateLimitService {
+
+    // 所有桶都有令牌才同时扣减；按 KEYS 顺序返回每个桶还需等待的毫秒数，全为 0 表示放行
+    @SuppressWarnings("rawtypes")
+    private static final DefaultRedisScript<List> TOKEN_BUCKET_SCRIPT = new DefaultRedisScript<>("""
+            local t = redis.call('TIME')
+            local now = tonumber(t[1]) * 1000 + math.floor(tonumber(t[2]) / 1000)
+            local blocked = false
+            local waits = {}
+            local tokens = {}
+            for i, key in ipairs(KEYS) do
+                local capacity = tonumber(ARGV[2 * i - 1])
+                local rate = tonumber(ARGV[2 * i])
+                local bucket = redis.call('HMGET', key, 'tokens', 'ts')
+                local current = tonumber(bucket[1]) or capacity
+                local ts = tonumber(bucket[2]) or now
+                current = math.min(capacity, current + (now - ts) * rate)
+                tokens[i] = current
+                waits[i] = 0
+                if current < 1 then
+                    waits[i] = math.ceil((1 - current) / rate)
+                    blocked = true
+                end
+            end
+            if blocked then
+                return waits
+            end
+            for i, key in ipairs(KEYS) do
+                local capacity = tonumber(ARGV[2 * i - 1])
+                local rate = tonumber(ARGV[2 * i])
+                redis.call('HSET', key, 'tokens', tostring(tokens[i] - 1), 'ts', tostring(now))
+                redis.call('PEXPIRE', key, math.ceil(capacity / rate))
+            end
+            return waits
+            """, List.class);
+
+    @Autowired
+    private StringRedisTemplate redisTemplate;
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${qinglian.login-rate-limit.username-capacity:10}")
+    private int usernameCapacity;
+    @Value("${qinglian.login-rate-limit.username-refill-per-minute:10}")
+    private double usernameRefillPerMinute;
+    @Value("${qinglian.login-rate-limit.ip-capacity:60}")
+    private int ipCapacity;
+    @Value("${qinglian.login-rate-limit.ip-refill-per-minute:60}")
+    private double ipRefillPerMinute;
+
+    // bucket key -> 解封时间 (毫秒)
+    private final Cache<String, Long> blockedUntil = Caffeine.newBuilder()
+            .maximumSize(100_000)
+            .expireAfterWrite(Duration.ofMinutes(10))
+            .build();
+
+    private Counter rejectedCounter;
+
+    @PostConstruct
+    public void init() {
+        rejectedCounter = meterRegistry.counter("qinglian.login.rate-limited");
+    }
+
+    @Override
+    public void acquire(String username, String clientIp) {
+        String usernameKey = "login:bucket:user:" + username;
+        String ipKey = "login:bucket:ip:" + clientIp;
+
+        long now = System.currentTimeMillis();
+        if (isBlocked(usernameKey, now) || isBlocked(ipKey, now)) {
+            reject();
+        }
+
+        List<String> keys = List.of(usernameKey, ipKey);
+        List<?> waits;
+        try {
+            waits = redisTemplate.execute(TOKEN_BUCKET_SCRIPT, keys,
+                    String.valueOf(usernameCapacity), String.valueOf(usernameRefillPerMinute / 60000),
+                    String.valueOf(ipCapacity), String.valueOf(ipRefillPerMinute / 60000));
+        } catch (Exception e) {
+            log.warn("登录限流检查失败，本次放行: {}", e.getMessage());
+            return;
+        }
+
+        if (waits == null) {
+            return;
+        }
+        boolean rejected = false;
+        for (int i = 0; i < keys.size(); i++) {
+            long wait = Long.parseLong(String.valueOf(waits.get(i)));
+            if (wait > 0) {
+                // 只封禁耗尽的那个桶，例如同一出口 IP 被限流时不影响该用户从别处登录
+                blockedUntil.put(keys.get(i), now + wait);
+                rejected = true;
+            }
+        }
+        if (rejected) {
+            reject();
+        }
+    }
+
+    private boolean isBlocked(String key, long now) {
+        Long until = blockedUntil.getIfPresent(key);
+        return until != null && until > now;
+    }
+
+    private void reject() {
+        rejectedCounter.increment();
+        throw new RuntimeException("登录尝试过于频繁，请稍后再试");
+    }
+}
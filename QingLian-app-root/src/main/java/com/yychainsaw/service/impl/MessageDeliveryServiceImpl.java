@@ -0,0 +1,407 @@
+package com.yychainsaw.service.impl;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.yychainsaw.service.MessageDeliveryService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Range;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.socket.messaging.SessionConnectedEvent;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+import org.springframework.web.socket.messaging.SessionSubscribeEvent;
+import org.springframework.web.socket.messaging.SessionUnsubscribeEvent;
+
+import java.nio.charset.StandardCharsets;
+import java.security.Principal;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * WebSocket 消息投递
+ *
+ * 单机模式 (默认): 直接交给本机的 SimpleBroker。
+ * 集群模式 (qinglian.ws.cluster.enabled=true): 消息发布到 Redis 频道
+ *   ws:user:{userId}    发给某个用户
+ *   ws:group:{groupId}  发给某个群
+ * 每个节点只订阅本机有连接的用户、本机有人订阅的群，收到后交给本机 SimpleBroker 投递给自己的会话。
+ * 会话登记: ws:sessions:{userId} (hash, nodeId -> 本节点连接数)，节点存活: ws:node:{nodeId} (带过期的心跳)。
+ *
+ * 可靠推送: ws:seq:{userId} 为用户的递增序号，消息同时以 {seq}-0 为 ID 写入 Redis Stream ws:replay:{userId}
+ * (按条数截断)，推送帧带 seq 头。客户端 CONNECT 时带 last-seq，订阅后只补发缺失的部分；
+ * 缺口已超出缓冲时推送 sync=reset，由客户端自行重新拉取历史。
+ */
+@Slf4j
+@Service
+public class MessageDeliveryServiceImpl implements MessageDeliveryService, MessageListener {
+
+    private static final String USER_CHANNEL_PREFIX = "ws:user:";
+    private static final String GROUP_CHANNEL_PREFIX = "ws:group:";
+    private static final String GROUP_DESTINATION_PREFIX = "/topic/group.";
+    private static final String MESSAGES_DESTINATION = "/queue/messages";
+    private static final Duration NODE_TTL = Duration.ofSeconds(30);
+
+    // 序号分配与写入缓冲放在同一脚本里，保证 Stream ID 与 seq 顺序一致
+    private static final DefaultRedisScript<Long> APPEND_SCRIPT = new DefaultRedisScript<>("""
+            local seq = redis.call('INCR', KEYS[1])
+            redis.call('XADD', KEYS[2], 'MAXLEN', '~', ARGV[1], seq .. '-0', 'e', ARGV[2])
+            redis.call('EXPIRE', KEYS[2], ARGV[3])
+            return seq
+            """, Long.class);
+
+    @Autowired
+    private SimpMessagingTemplate messagingTemplate;
+    @Autowired
+    private StringRedisTemplate redisTemplate;
+    @Autowired
+    private RedisMessageListenerContainer listenerContainer;
+    @Autowired
+    private ObjectMapper objectMapper;
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${qinglian.ws.cluster.enabled:false}")
+    private boolean clusterEnabled;
+    // 每个用户保留的补发条数
+    @Value("${qinglian.ws.replay.capacity:500}")
+    private int replayCapacity;
+    @Value("${qinglian.ws.replay.ttl-hours:72}")
+    private long replayTtlHours;
+
+    private final String nodeId = UUID.randomUUID().toString();
+
+    // sessionId -> 会话信息
+    private final Map<String, LocalSession> sessions = new ConcurrentHashMap<>();
+    // 本节点订阅的 Redis 频道 -> 引用数 (用户的连接数 / 群的订阅数)
+    private final Map<String, Integer> channelRefs = new ConcurrentHashMap<>();
+
+    private Counter replayedCounter;
+    private Counter resetCounter;
+
+    private static class LocalSession {
+        final String userId;
+        final Map<String, Long> groupSubscriptions = new ConcurrentHashMap<>(); // subscriptionId -> groupId
+
+        LocalSession(String userId) {
+            this.userId = userId;
+        }
+    }
+
+    @PostConstruct
+    public void init() {
+        replayedCounter = meterRegistry.counter("qinglian.ws.replay.messages");
+        resetCounter = meterRegistry.counter("qinglian.ws.replay.resets");
+        if (clusterEnabled) {
+            heartbeat();
+            log.info("WebSocket 集群投递已开启, 节点: {}", nodeId);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (!clusterEnabled) {
+            return;
+        }
+        for (LocalSession session : sessions.values()) {
+            redisTemplate.opsForHash().delete(getSessionsKey(session.userId), nodeId);
+        }
+        redisTemplate.delete(getNodeKey(nodeId));
+    }
+
+    @Override
+    public void sendToUser(String userId, String destination, Object payload) {
+        if (!clusterEnabled) {
+            messagingTemplate.convertAndSendToUser(userId, destination, payload);
+            return;
+        }
+        publish(USER_CHANNEL_PREFIX + userId, createEnvelope(userId, destination, payload));
+    }
+
+    @Override
+    public void sendReliableToUser(String userId, Object payload) {
+        ObjectNode envelope = createEnvelope(userId, MESSAGES_DESTINATION, payload);
+        Long seq;
+        try {
+            seq = redisTemplate.execute(APPEND_SCRIPT,
+                    List.of(getSeqKey(userId), getReplayKey(userId)),
+                    String.valueOf(replayCapacity),
+                    objectMapper.writeValueAsString(envelope),
+                    String.valueOf(Duration.ofHours(replayTtlHours).toSeconds()));
+        } catch (Exception e) {
+            // Redis 不可用时退化为普通推送，客户端重连后按 sync=reset 重新拉取
+            log.error("消息写入补发缓冲失败, userId: {}", userId, e);
+            seq = null;
+        }
+        if (seq != null) {
+            envelope.put("s", seq);
+        }
+        if (!clusterEnabled) {
+            deliver(envelope, null);
+            return;
+        }
+        publish(USER_CHANNEL_PREFIX + userId, envelope);
+    }
+
+    @Override
+    public void resume(String userId, String sessionId, Long lastSeq) {
+        try {
+            String current = redisTemplate.opsForValue().get(getSeqKey(userId));
+            long currentSeq = current == null ? 0 : Long.parseLong(current);
+            if (lastSeq == null) {
+                sendSync(userId, sessionId, "init", currentSeq);
+                return;
+            }
+            if (lastSeq >= currentSeq) {
+                // 客户端的 seq 比服务端还大 (换了账号或序号被清理)，以服务端为准
+                if (lastSeq > currentSeq) {
+                    sendSync(userId, sessionId, "reset", currentSeq);
+                }
+                return;
+            }
+
+            List<MapRecord<String, Object, Object>> records = redisTemplate.opsForStream().range(
+                    getReplayKey(userId), Range.rightUnbounded(Range.Bound.inclusive((lastSeq + 1) + "-0")));
+            if (records == null || records.isEmpty() || seqOf(records.get(0)) != lastSeq + 1) {
+                // 缺口的开头已被截断，补发不完整，让客户端改为拉取历史
+                resetCounter.increment();
+                sendSync(userId, sessionId, "reset", currentSeq);
+                return;
+            }
+            for (MapRecord<String, Object, Object> record : records) {
+                ObjectNode envelope = (ObjectNode) objectMapper.readTree(record.getValue().get("e").toString());
+                envelope.put("s", seqOf(record));
+                deliver(envelope, sessionId);
+            }
+            replayedCounter.increment(records.size());
+        } catch (Exception e) {
+            log.error("WebSocket 消息补发失败, userId: {}, lastSeq: {}", userId, lastSeq, e);
+        }
+    }
+
+    @Override
+    public void sendToGroup(Long groupId, Object payload) {
+        String destination = GROUP_DESTINATION_PREFIX + groupId;
+        if (!clusterEnabled) {
+            messagingTemplate.convertAndSend(destination, payload);
+            return;
+        }
+        publish(GROUP_CHANNEL_PREFIX + groupId, createEnvelope(null, destination, payload));
+    }
+
+    @Override
+    public Set<String> getUserNodes(String userId) {
+        if (!clusterEnabled) {
+            return Collections.emptySet();
+        }
+        Set<String> nodes = new HashSet<>();
+        for (Object node : redisTemplate.opsForHash().keys(getSessionsKey(userId))) {
+            // 宕机节点来不及清理登记，以心跳是否存在为准
+            if (Boolean.TRUE.equals(redisTemplate.hasKey(getNodeKey(node.toString())))) {
+                nodes.add(node.toString());
+            } else {
+                redisTemplate.opsForHash().delete(getSessionsKey(userId), node);
+            }
+        }
+        return nodes;
+    }
+
+    // 信封: u = 用户 (群消息为空), d = 目的地, t = 是否纯文本, p = 消息体, s = 可靠推送的序号
+    private ObjectNode createEnvelope(String userId, String destination, Object payload) {
+        ObjectNode envelope = objectMapper.createObjectNode();
+        envelope.put("u", userId);
+        envelope.put("d", destination);
+        if (payload instanceof String text) {
+            envelope.put("t", true);
+            envelope.put("p", text);
+        } else {
+            envelope.put("t", false);
+            envelope.set("p", objectMapper.valueToTree(payload));
+        }
+        return envelope;
+    }
+
+    private void publish(String channel, ObjectNode envelope) {
+        try {
+            redisTemplate.convertAndSend(channel, objectMapper.writeValueAsString(envelope));
+        } catch (Exception e) {
+            log.error("WebSocket 消息发布失败, channel: {}", channel, e);
+        }
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        try {
+            deliver(objectMapper.readTree(new String(message.getBody(), StandardCharsets.UTF_8)), null);
+        } catch (Exception e) {
+            log.error("WebSocket 集群消息投递失败", e);
+        }
+    }
+
+    // 交给本机 broker；sessionId 不为空时只发给该会话
+    private void deliver(JsonNode envelope, String sessionId) {
+        String destination = envelope.get("d").asText();
+        // 文本按原样发送，对象以 JsonNode 交给 Jackson 转换器，客户端收到的内容与单机模式一致
+        Object payload = envelope.get("t").asBoolean() ? envelope.get("p").asText() : envelope.get("p");
+        JsonNode user = envelope.get("u");
+        if (user == null || user.isNull()) {
+            messagingTemplate.convertAndSend(destination, payload);
+            return;
+        }
+        JsonNode seq = envelope.get("s");
+        if (seq == null && sessionId == null) {
+            messagingTemplate.convertAndSendToUser(user.asText(), destination, payload);
+            return;
+        }
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        if (sessionId != null) {
+            accessor.setSessionId(sessionId);
+        }
+        if (seq != null) {
+            accessor.setNativeHeader("seq", seq.asText());
+        }
+        accessor.setLeaveMutable(true);
+        messagingTemplate.convertAndSendToUser(user.asText(), destination, payload, accessor.getMessageHeaders());
+    }
+
+    // 只带 sync / seq 头的空帧，告诉客户端从哪个 seq 继续
+    private void sendSync(String userId, String sessionId, String mode, long seq) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setSessionId(sessionId);
+        accessor.setNativeHeader("sync", mode);
+        accessor.setNativeHeader("seq", String.valueOf(seq));
+        accessor.setLeaveMutable(true);
+        messagingTemplate.convertAndSendToUser(userId, MESSAGES_DESTINATION, "", accessor.getMessageHeaders());
+    }
+
+    private long seqOf(MapRecord<String, Object, Object> record) {
+        return record.getId().getTimestamp();
+    }
+
+    @EventListener
+    public void onConnected(SessionConnectedEvent event) {
+        Principal user = event.getUser();
+        if (!clusterEnabled || user == null) {
+            return;
+        }
+        String sessionId = StompHeaderAccessor.wrap(event.getMessage()).getSessionId();
+        sessions.put(sessionId, new LocalSession(user.getName()));
+        redisTemplate.opsForHash().increment(getSessionsKey(user.getName()), nodeId, 1);
+        retain(USER_CHANNEL_PREFIX + user.getName());
+    }
+
+    @EventListener
+    public void onSubscribe(SessionSubscribeEvent event) {
+        if (!clusterEnabled) {
+            return;
+        }
+        StompHeaderAccessor accessor = StompHeaderAccessor.wrap(event.getMessage());
+        LocalSession session = sessions.get(accessor.getSessionId());
+        String destination = accessor.getDestination();
+        if (session == null || destination == null || !destination.startsWith(GROUP_DESTINATION_PREFIX)) {
+            return;
+        }
+        try {
+            Long groupId = Long.valueOf(destination.substring(GROUP_DESTINATION_PREFIX.length()));
+            session.groupSubscriptions.put(accessor.getSubscriptionId(), groupId);
+            retain(GROUP_CHANNEL_PREFIX + groupId);
+        } catch (NumberFormatException ignored) {
+        }
+    }
+
+    @EventListener
+    public void onUnsubscribe(SessionUnsubscribeEvent event) {
+        if (!clusterEnabled) {
+            return;
+        }
+        StompHeaderAccessor accessor = StompHeaderAccessor.wrap(event.getMessage());
+        LocalSession session = sessions.get(accessor.getSessionId());
+        if (session == null) {
+            return;
+        }
+        Long groupId = session.groupSubscriptions.remove(accessor.getSubscriptionId());
+        if (groupId != null) {
+            release(GROUP_CHANNEL_PREFIX + groupId);
+        }
+    }
+
+    @EventListener
+    public void onDisconnect(SessionDisconnectEvent event) {
+        // 同一会话可能收到多次断开事件，只处理第一次
+        LocalSession session = sessions.remove(event.getSessionId());
+        if (session == null) {
+            return;
+        }
+        session.groupSubscriptions.values().forEach(groupId -> release(GROUP_CHANNEL_PREFIX + groupId));
+        release(USER_CHANNEL_PREFIX + session.userId);
+
+        String sessionsKey = getSessionsKey(session.userId);
+        Long remaining = redisTemplate.opsForHash().increment(sessionsKey, nodeId, -1);
+        if (remaining != null && remaining <= 0) {
+            redisTemplate.opsForHash().delete(sessionsKey, nodeId);
+        }
+    }
+
+    @Scheduled(fixedDelay = 10000)
+    public void heartbeat() {
+        if (clusterEnabled) {
+            redisTemplate.opsForValue().set(getNodeKey(nodeId), "1", NODE_TTL);
+        }
+    }
+
+    // 引用数从 0 变 1 时订阅频道，从 1 变 0 时退订
+    private void retain(String channel) {
+        channelRefs.compute(channel, (key, count) -> {
+            if (count == null) {
+                listenerContainer.addMessageListener(this, new ChannelTopic(channel));
+                return 1;
+            }
+            return count + 1;
+        });
+    }
+
+    private void release(String channel) {
+        channelRefs.computeIfPresent(channel, (key, count) -> {
+            if (count > 1) {
+                return count - 1;
+            }
+            listenerContainer.removeMessageListener(this, new ChannelTopic(channel));
+            return null;
+        });
+    }
+
+    private String getSeqKey(String userId) {
+        return "ws:seq:" + userId;
+    }
+
+    private String getReplayKey(String userId) {
+        return "ws:replay:" + userId;
+    }
+
+    private String getSessionsKey(String userId) {
+        return "ws:sessions:" + userId;
+    }
+
+    private String getNodeKey(String node) {
+        return "ws:node:" + node;
+    }
+}
@@ -0,0 +1,321 @@
+package com.yychainsaw.service.impl;
+
+import com.yychainsaw.mapper.ConversationMapper;
+import com.yychainsaw.mapper.MessageMapper;
+import com.yychainsaw.pojo.MessagePipelineProperties;
+import com.yychainsaw.pojo.entity.Message;
+import com.yychainsaw.pojo.vo.MessageAckVO;
+import com.yychainsaw.service.MessageDeliveryService;
+import com.yychainsaw.service.MessagePipelineService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.RecoverableDataAccessException;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * 消息 write-behind 落库管道
+ * 发送线程只入队并立即返回；后台单线程按批次多行 INSERT，msg_id 由序列在写入时分配，与提交顺序一致，
+ * 游标分页和已读水位可以直接依赖它。落库后回填 msg_id，给发送者推送 /user/queue/acks 回执 (按 clientMsgId 对应)，
+ * 再调用提交时的回调 (推送给接收方、计未读)，接收方不会看到尚未落库的消息。
+ * 队列满时发送线程等待 offerTimeoutMs，仍然失败则退化为同步写入 (背压 + 不丢消息)。
+ * 整批写入失败时逐行重试，坏行只影响自己；暂时性失败的行放回重试缓冲，超过 maxRetries 才回执 FAILED。
+ * 重试按 (sender_id, client_msg_id) 唯一索引去重，上次实际已提交的行回查 msg_id。
+ */
+@Slf4j
+@Service
+public class MessagePipelineServiceImpl implements MessagePipelineService {
+
+    @Autowired
+    private MessagePipelineProperties properties;
+    @Autowired
+    private MessageMapper messageMapper;
+    @Autowired
+    private ConversationMapper conversationMapper;
+    @Autowired
+    private StringRedisTemplate redisTemplate;
+    @Autowired
+    private MessageDeliveryService messageDeliveryService;
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private BlockingQueue<PendingMessage> queue;
+    private Thread flusher;
+    private volatile boolean running;
+
+    // 待重试的消息，只由落库线程读写 (stop 时落库线程已退出)
+    private final ArrayDeque<PendingMessage> retryBuffer = new ArrayDeque<>();
+    private final Map<String, Integer> retryAttempts = new HashMap<>();
+
+    private Timer flushTimer;
+    private Counter flushedCounter;
+    private Counter fallbackCounter;
+    private Counter retriedCounter;
+    private Counter failedCounter;
+
+    private static class PendingMessage {
+        private final Message message;
+        private final Consumer<Message> onPersisted;
+
+        private PendingMessage(Message message, Consumer<Message> onPersisted) {
+            this.message = message;
+            this.onPersisted = onPersisted;
+        }
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        init();
+        running = true;
+        flusher = new Thread(this::flushLoop, "message-flusher");
+        flusher.setDaemon(true);
+        flusher.start();
+        log.info("消息异步落库管道已启动, 队列容量: {}, 批大小: {}", properties.getQueueCapacity(), properties.getBatchSize());
+    }
+
+    // 队列和指标，不启动落库线程
+    private void init() {
+        queue = new ArrayBlockingQueue<>(properties.getQueueCapacity());
+        meterRegistry.gauge("qinglian.message.pipeline.queue.depth", queue, BlockingQueue::size);
+        flushTimer = Timer.builder("qinglian.message.pipeline.flush")
+                .description("批量落库耗时")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+        flushedCounter = meterRegistry.counter("qinglian.message.pipeline.flushed");
+        fallbackCounter = meterRegistry.counter("qinglian.message.pipeline.fallback");
+        retriedCounter = meterRegistry.counter("qinglian.message.pipeline.retried");
+        failedCounter = meterRegistry.counter("qinglian.message.pipeline.failed");
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        if (flusher == null) {
+            return;
+        }
+        running = false;
+        flusher.interrupt();
+        flusher.join(5000);
+        // 关闭前把剩余消息全部写入 (包括待重试的)
+        List<PendingMessage> rest = new ArrayList<>(retryBuffer);
+        retryBuffer.clear();
+        queue.drainTo(rest);
+        if (!rest.isEmpty()) {
+            flush(rest);
+        }
+        if (!retryBuffer.isEmpty()) {
+            log.error("关闭时仍有消息未能落库, 条数: {}, clientMsgId: {}", retryBuffer.size(),
+                    retryBuffer.stream().map(p -> p.message.getClientMsgId()).toList());
+        }
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return properties.isEnabled();
+    }
+
+    @Override
+    public void submit(Message message, Consumer<Message> onPersisted) {
+        if (message.getClientMsgId() == null) {
+            message.setClientMsgId(UUID.randomUUID().toString());
+        }
+        if (message.getSentAt() == null) {
+            message.setSentAt(LocalDateTime.now());
+        }
+        PendingMessage pending = new PendingMessage(message, onPersisted);
+
+        boolean queued;
+        try {
+            queued = queue.offer(pending, properties.getOfferTimeoutMs(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            queued = false;
+        }
+
+        if (!queued) {
+            // 队列已满: 由发送线程直接写库，失败直接抛给发送者
+            fallbackCounter.increment();
+            insert(List.of(pending));
+            afterPersisted(List.of(pending));
+        }
+    }
+
+    private void flushLoop() {
+        List<PendingMessage> batch = new ArrayList<>(properties.getBatchSize());
+        while (running) {
+            try {
+                if (!retryBuffer.isEmpty()) {
+                    // 暂时性故障通常需要一点时间恢复，先退避再带上重试的消息
+                    Thread.sleep(properties.getRetryBackoffMs());
+                    while (!retryBuffer.isEmpty() && batch.size() < properties.getBatchSize()) {
+                        batch.add(retryBuffer.poll());
+                    }
+                } else {
+                    PendingMessage first = queue.poll(properties.getFlushIntervalMs(), TimeUnit.MILLISECONDS);
+                    if (first == null) {
+                        continue;
+                    }
+                    batch.add(first);
+                }
+                queue.drainTo(batch, properties.getBatchSize() - batch.size());
+                flush(batch);
+            } catch (InterruptedException e) {
+                if (!running) {
+                    break;
+                }
+            } catch (Exception e) {
+                log.error("消息落库线程处理批次异常, 条数: {}", batch.size(), e);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void flush(List<PendingMessage> batch) {
+        long start = System.nanoTime();
+        try {
+            insert(batch);
+        } catch (Exception e) {
+            log.error("消息批量落库失败，改为逐行写入, 条数: {}", batch.size(), e);
+            flushRowByRow(batch);
+            return;
+        } finally {
+            flushTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+
+        flushedCounter.increment(batch.size());
+        batch.forEach(p -> retryAttempts.remove(retryKey(p.message)));
+        afterPersisted(batch);
+    }
+
+    // 逐行写入，把坏行隔离出来；遇到暂时性故障时剩余的行不再尝试，直接放回重试
+    private void flushRowByRow(List<PendingMessage> batch) {
+        List<PendingMessage> persisted = new ArrayList<>();
+        boolean unavailable = false;
+        for (PendingMessage p : batch) {
+            if (unavailable) {
+                retryOrFail(p, null);
+                continue;
+            }
+            try {
+                insert(List.of(p));
+                persisted.add(p);
+            } catch (Exception e) {
+                unavailable = isTransient(e);
+                retryOrFail(p, e);
+            }
+        }
+        if (!persisted.isEmpty()) {
+            flushedCounter.increment(persisted.size());
+            persisted.forEach(p -> retryAttempts.remove(retryKey(p.message)));
+            afterPersisted(persisted);
+        }
+    }
+
+    // 写入并回填 msg_id；不在 RETURNING 中的行是之前某次尝试已提交的 (如提交后连接断开)，回查 msg_id
+    private void insert(List<PendingMessage> batch) {
+        List<Message> messages = batch.stream().map(p -> p.message).toList();
+        Map<String, Long> ids = new HashMap<>();
+        for (Message row : messageMapper.insertBatch(messages)) {
+            ids.put(retryKey(row), row.getMsgId());
+        }
+        List<Message> existing = messages.stream().filter(m -> !ids.containsKey(retryKey(m))).toList();
+        if (!existing.isEmpty()) {
+            for (Message row : messageMapper.selectByClientMsgIds(existing)) {
+                ids.put(retryKey(row), row.getMsgId());
+            }
+        }
+        for (Message m : messages) {
+            Long msgId = ids.get(retryKey(m));
+            if (msgId == null) {
+                throw new IllegalStateException("消息写入后未查到 msg_id, clientMsgId: " + m.getClientMsgId());
+            }
+            m.setMsgId(msgId);
+        }
+    }
+
+    // e 为空表示同批内已判定数据库暂时不可用
+    private void retryOrFail(PendingMessage pending, Exception e) {
+        String key = retryKey(pending.message);
+        if (e == null || isTransient(e)) {
+            int attempts = retryAttempts.merge(key, 1, Integer::sum);
+            if (attempts <= properties.getMaxRetries()) {
+                retriedCounter.increment();
+                retryBuffer.add(pending);
+                return;
+            }
+        }
+        log.error("消息落库失败, clientMsgId: {}", pending.message.getClientMsgId(), e);
+        retryAttempts.remove(key);
+        failedCounter.increment();
+        sendAck(pending.message, "FAILED");
+    }
+
+    // 连接失败、超时、死锁、锁等待等，稍后重试可能成功；约束冲突、类型错误等重试也不会成功
+    private boolean isTransient(Throwable e) {
+        return e instanceof TransientDataAccessException
+                || e instanceof RecoverableDataAccessException
+                || e instanceof DataAccessResourceFailureException;
+    }
+
+    // clientMsgId 由客户端生成，只在同一发送者内唯一
+    private String retryKey(Message message) {
+        return message.getSenderId() + ":" + message.getClientMsgId();
+    }
+
+    // 落库后维护会话摘要、回执，再交给提交方推送
+    private void afterPersisted(List<PendingMessage> batch) {
+        Set<String> friendListKeys = new HashSet<>();
+        for (PendingMessage p : batch) {
+            Message m = p.message;
+            if (m.getReceiverId() != null && !m.getReceiverId().equals(m.getSenderId())) {
+                conversationMapper.upsertOnSend(m.getSenderId(), m.getReceiverId(), m.getMsgId(),
+                        m.getContent(), m.getSentAt());
+                friendListKeys.add("user:friends:" + m.getSenderId());
+                friendListKeys.add("user:friends:" + m.getReceiverId());
+            }
+        }
+        if (!friendListKeys.isEmpty()) {
+            redisTemplate.delete(friendListKeys);
+        }
+        for (PendingMessage p : batch) {
+            sendAck(p.message, "PERSISTED");
+            try {
+                p.onPersisted.accept(p.message);
+            } catch (Exception e) {
+                log.error("消息落库后推送失败, msgId: {}", p.message.getMsgId(), e);
+            }
+        }
+    }
+
+    private void sendAck(Message message, String status) {
+        messageDeliveryService.sendToUser(
+                message.getSenderId().toString(),
+                "/queue/acks",
+                new MessageAckVO(message.getClientMsgId(), message.getMsgId(), status)
+        );
+    }
+}
@@ -2,20 +2,32 @@ package com.yychainsaw.service.impl;
 
 import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
 import com.baomidou.mybatisplus.core.conditions.update.UpdateWrapper;
+import com.yychainsaw.mapper.ConversationMapper;
 import com.yychainsaw.mapper.MessageMapper;
-import com.yychainsaw.mapper.UserMapper;
+import com.yychainsaw.pojo.dto.CursorPageBean;
 import com.yychainsaw.pojo.dto.MessageSendDTO;
+import com.yychainsaw.pojo.entity.GroupMember;
 import com.yychainsaw.pojo.entity.Message;
-import com.yychainsaw.pojo.entity.User;
 import com.yychainsaw.pojo.vo.MessageVO;
+import com.yychainsaw.pojo.vo.UserBriefVO;
+import com.yychainsaw.service.BadgeService;
+import com.yychainsaw.service.GroupService;
+import com.yychainsaw.service.GroupUnreadService;
+import com.yychainsaw.service.MessageDeliveryService;
+import com.yychainsaw.service.MessagePipelineService;
 import com.yychainsaw.service.MessageService;
+import com.yychainsaw.service.UserProfileService;
 import com.yychainsaw.utils.ThreadLocalUtil;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.util.StringUtils;
 
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
@@ -23,13 +35,34 @@ import java.util.stream.Collectors;
 
 @Service
 public class MessageServiceImpl implements MessageService {
+
+    private static final int MAX_CURSOR_PAGE_SIZE = 100;
+
     @Autowired
     private MessageMapper messageMapper;
     @Autowired
-    private UserMapper userMapper;
+    private UserProfileService userProfileService;
+    @Autowired
+    private ConversationMapper conversationMapper;
+    @Autowired
+    private StringRedisTemplate redisTemplate;
+    @Autowired
+    private GroupService groupService;
+    @Autowired
+    private GroupUnreadService groupUnreadService;
+    @Autowired
+    private MessagePipelineService messagePipelineService;
+    @Autowired
+    private BadgeService badgeService;
+    @Autowired
+    private MessageDeliveryService messageDeliveryService;
 
+    private String getFriendListKey(UUID userId) {
+        return "user:friends:" + userId;
+    }
 
     @Override
+    @Transactional(rollbackFor = Exception.class)
     public MessageVO sendMessage(MessageSendDTO dto) {
         UUID senderId = ThreadLocalUtil.getCurrentUserId();
 
@@ -50,26 +83,84 @@ public class MessageServiceImpl implements MessageService {
             message.setGroupId(null);
             message.setIsRead(false);
         }
+        // 群成员在发送线程上取好，异步落库模式下落库线程直接使用
+        List<UUID> memberIds = message.getGroupId() == null ? null
+                : groupService.getGroupMembers(message.getGroupId()).stream()
+                        .map(GroupMember::getUserId)
+                        .collect(Collectors.toList());
+        UserBriefVO sender = userProfileService.getProfile(senderId);
+
+        if (messagePipelineService.isEnabled()) {
+            // 异步落库模式: 入队后立即返回 (id 为空，按 clientMsgId 对应回执)；
+            // 落库分配 msg_id 后才计未读并推送给接收方，接收方看到的 msg_id 都已提交
+            String clientMsgId = dto.getClientMsgId();
+            message.setClientMsgId(StringUtils.hasText(clientMsgId) && clientMsgId.length() <= 64
+                    ? clientMsgId : UUID.randomUUID().toString());
+            message.setSentAt(LocalDateTime.now());
+            // 入队后 message 由落库线程回填，返回值先构建好
+            MessageVO vo = toVO(message, sender);
+            messagePipelineService.submit(message, persisted -> {
+                countUnread(persisted, memberIds);
+                pushToReceivers(persisted, toVO(persisted, sender));
+            });
+            return vo;
+        }
+
         // 2. 插入数据库 (MyBatis 会自动回填 ID 到 message 对象中)
         messageMapper.insert(message);
-        User sender = userMapper.selectById(senderId);
-        // 3. 构建并返回 VO (这是 Controller 需要的数据)
+
+        // 维护会话摘要 (好友列表的最后一条消息和未读数)，自己发给自己不进入好友列表
+        if (message.getReceiverId() != null && !message.getReceiverId().equals(senderId)) {
+            conversationMapper.upsertOnSend(senderId, message.getReceiverId(), message.getMsgId(),
+                    message.getContent(), message.getSentAt());
+            redisTemplate.delete(List.of(getFriendListKey(senderId), getFriendListKey(message.getReceiverId())));
+        }
+
+        countUnread(message, memberIds);
+
+        // 3. 构建并返回 VO (这是 Controller 需要的数据)，由 Controller 推送
+        return toVO(message, sender);
+    }
+
+    private void countUnread(Message message, List<UUID> memberIds) {
+        // 接收方私聊角标 +1，事务提交后推送
+        if (message.getReceiverId() != null) {
+            badgeService.add(message.getReceiverId(), BadgeService.MESSAGES, 1);
+        }
+
+        // 群成员未读数 +1 (成员列表走 Redis 缓存)
+        if (message.getGroupId() != null) {
+            groupUnreadService.onGroupMessage(message.getGroupId(), message.getSenderId(), memberIds);
+        }
+    }
+
+    private void pushToReceivers(Message message, MessageVO vo) {
+        if (message.getGroupId() != null) {
+            messageDeliveryService.sendToGroup(message.getGroupId(), vo);
+        } else {
+            // 私聊走可靠推送，接收方断线重连后按 seq 补发
+            messageDeliveryService.sendReliableToUser(message.getReceiverId().toString(), vo);
+        }
+    }
+
+    private MessageVO toVO(Message message, UserBriefVO sender) {
         MessageVO vo = new MessageVO();
-        vo.setId(message.getMsgId()); // 确保 Mapper XML 配置了 useGeneratedKeys="true"
-        vo.setSenderId(senderId.toString());
-        vo.setSenderName(userMapper.selectById(senderId).getUsername());
-        vo.setReceiverId(dto.getReceiverId());
+        vo.setId(message.getMsgId()); // 同步写入时 insert 已回填
+        vo.setSenderId(message.getSenderId().toString());
+        vo.setSenderName(sender.getUsername());
+        vo.setReceiverId(message.getReceiverId() != null ? message.getReceiverId().toString() : null);
         vo.setContent(message.getContent());
         vo.setSentAt(message.getSentAt());
         vo.setIsRead(message.getIsRead());
         vo.setSenderNickname(sender.getNickname());
         vo.setSenderAvatar(sender.getAvatarUrl());
         vo.setType(message.getType());
-
+        vo.setClientMsgId(message.getClientMsgId());
         return vo;
     }
 
     @Override
+    @Transactional(rollbackFor = Exception.class)
     public void markAsRead(UUID senderId) {
         // SQL #5
         UUID userId = ThreadLocalUtil.getCurrentUserId();
@@ -78,16 +169,19 @@ public class MessageServiceImpl implements MessageService {
                 .eq("receiver_id", userId)
                 .eq("is_read", false)
                 .set("is_read", true);
-        messageMapper.update(null, wrapper);
+        int rows = messageMapper.update(null, wrapper);
+        badgeService.add(userId, BadgeService.MESSAGES, -rows);
+
+        if (conversationMapper.resetUnread(userId, senderId) > 0) {
+            redisTemplate.delete(getFriendListKey(userId));
+        }
     }
 
     @Override
     public Long getUnreadCount() {
-        // SQL #6
+        // 读角标计数，只有冷启动时才会 COUNT
         UUID userId = ThreadLocalUtil.getCurrentUserId();
-        QueryWrapper<Message> wrapper = new QueryWrapper<>();
-        wrapper.eq("receiver_id", userId).eq("is_read", false);
-        return messageMapper.selectCount(wrapper);
+        return badgeService.getBadges(userId).get(BadgeService.MESSAGES);
     }
 
     @Override
@@ -99,7 +193,8 @@ public class MessageServiceImpl implements MessageService {
     @Override
     public void markGroupAsRead(Long groupId, Long lastMsgId) {
         UUID userId = ThreadLocalUtil.getCurrentUserId();
-        messageMapper.markGroupAsRead(groupId, userId, lastMsgId);
+        Long watermark = messageMapper.markGroupAsRead(groupId, userId, lastMsgId);
+        groupUnreadService.onGroupRead(groupId, userId, watermark);
     }
 
     @Override
@@ -122,10 +217,8 @@ public class MessageServiceImpl implements MessageService {
                 .distinct()
                 .collect(Collectors.toList());
 
-        // 2. 批量查询用户信息
-        List<User> users = userMapper.selectBatchIds(userIds);
-        Map<UUID, User> userMap = users.stream()
-                .collect(Collectors.toMap(User::getUserId, u -> u));
+        // 2. 批量获取用户资料 (进程内缓存，未命中的合并查询)
+        Map<UUID, UserBriefVO> userMap = userProfileService.getProfiles(userIds);
 
         // 3. 转换 Message -> MessageVO
         return messages.stream().map(msg -> {
@@ -138,7 +231,7 @@ public class MessageServiceImpl implements MessageService {
             vo.setIsRead(msg.getIsRead());
 
             // 填充用户信息
-            User u = userMap.get(msg.getSenderId());
+            UserBriefVO u = userMap.get(msg.getSenderId());
             if (u != null) {
                 vo.setSenderName(u.getUsername());
                 vo.setSenderNickname(u.getNickname());
@@ -147,4 +240,55 @@ public class MessageServiceImpl implements MessageService {
             return vo;
         }).collect(Collectors.toList());
     }
+
+    @Override
+    public CursorPageBean<MessageVO> getChatHistoryByCursor(UUID friendId, Long beforeId, Long afterId, Integer limit) {
+        checkCursor(beforeId, afterId);
+        UUID userId = ThreadLocalUtil.getCurrentUserId();
+        int size = normalizePageSize(limit);
+        // 多查一条用于判断是否还有下一页，替代 COUNT(*)
+        List<Message> rows = messageMapper.selectChatHistoryByCursor(userId, friendId, beforeId, afterId, size + 1);
+        return toCursorPage(rows, size, afterId != null);
+    }
+
+    @Override
+    public CursorPageBean<MessageVO> getGroupChatHistoryByCursor(Long groupId, Long beforeId, Long afterId, Integer limit) {
+        checkCursor(beforeId, afterId);
+        int size = normalizePageSize(limit);
+        List<Message> rows = messageMapper.selectGroupHistoryByCursor(groupId, beforeId, afterId, size + 1);
+        return toCursorPage(rows, size, afterId != null);
+    }
+
+    private void checkCursor(Long beforeId, Long afterId) {
+        if (beforeId != null && afterId != null) {
+            throw new IllegalArgumentException("before 和 after 游标不能同时指定");
+        }
+    }
+
+    private int normalizePageSize(Integer limit) {
+        if (limit == null || limit <= 0) {
+            return 20;
+        }
+        return Math.min(limit, MAX_CURSOR_PAGE_SIZE);
+    }
+
+    /**
+     * rows 为 after 方向时按 msg_id 升序，否则按 msg_id 降序。
+     * 返回结果统一按时间正序排列 (与原分页接口一致)，nextCursor 为继续向同一方向翻页的 msg_id
+     */
+    private CursorPageBean<MessageVO> toCursorPage(List<Message> rows, int size, boolean ascending) {
+        boolean hasMore = rows.size() > size;
+        List<Message> page = new ArrayList<>(hasMore ? rows.subList(0, size) : rows);
+        if (!ascending) {
+            Collections.reverse(page);
+        }
+
+        String nextCursor = null;
+        if (hasMore) {
+            Message edge = ascending ? page.get(page.size() - 1) : page.get(0);
+            nextCursor = String.valueOf(edge.getMsgId());
+        }
+
+        return new CursorPageBean<>(transferToVOList(page), nextCursor, hasMore);
+    }
 }
@@ -0,0 +1,207 @@
+package com.yychainsaw.service.impl;
+
+import com.aliyun.oss.ClientBuilderConfiguration;
+import com.aliyun.oss.OSS;
+import com.aliyun.oss.OSSClientBuilder;
+import com.aliyun.oss.OSSErrorCode;
+import com.aliyun.oss.OSSException;
+import com.aliyun.oss.common.auth.DefaultCredentialProvider;
+import com.aliyun.oss.common.comm.SignVersion;
+import com.aliyun.oss.model.*;
+import com.yychainsaw.pojo.AliOssProperties;
+import com.yychainsaw.pojo.FileStorageProperties;
+import com.yychainsaw.pojo.StoredObjectInfo;
+import com.yychainsaw.pojo.vo.PresignedUploadVO;
+import com.yychainsaw.service.FileStorageService;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 阿里云 OSS 存储
+ * OSS 客户端线程安全，整个应用共用一个实例 (连接池 + TLS 会话复用)，关闭时再释放。
+ * 大文件按 partSize 边读边传分片，内存中最多只缓冲一个分片，不需要先落盘或整体读入。
+ */
+@Slf4j
+@Service
+@ConditionalOnProperty(prefix = "qinglian.storage", name = "type", havingValue = "oss", matchIfMissing = true)
+public class OssFileStorageService implements FileStorageService {
+
+    @Autowired
+    private AliOssProperties aliOssProperties;
+    @Autowired
+    private FileStorageProperties properties;
+
+    private OSS ossClient;
+
+    @PostConstruct
+    public void init() {
+        ClientBuilderConfiguration configuration = new ClientBuilderConfiguration();
+        configuration.setSignatureVersion(SignVersion.V4);
+        configuration.setMaxConnections(properties.getMaxConnections());
+        configuration.setConnectionTimeout(properties.getConnectionTimeoutMs());
+        configuration.setSocketTimeout(properties.getSocketTimeoutMs());
+
+        ossClient = OSSClientBuilder.create()
+                .endpoint(aliOssProperties.getEndpoint())
+                .credentialsProvider(new DefaultCredentialProvider(
+                        aliOssProperties.getAccessKeyId(), aliOssProperties.getAccessKeySecret()))
+                .clientConfiguration(configuration)
+                .region(properties.getRegion())
+                .build();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        ossClient.shutdown();
+    }
+
+    @Override
+    public String store(String objectName, InputStream in, long size, String contentType) {
+        try {
+            if (size >= 0 && size <= properties.getMultipartThreshold()) {
+                putObject(objectName, in, size, contentType);
+            } else {
+                multipartUpload(objectName, in, contentType);
+            }
+        } catch (OSSException oe) {
+            log.error("OSS 拒绝上传 {}: code={}, message={}, requestId={}",
+                    objectName, oe.getErrorCode(), oe.getErrorMessage(), oe.getRequestId());
+            throw new RuntimeException("文件上传失败: " + oe.getErrorMessage());
+        } catch (IOException e) {
+            throw new RuntimeException("读取上传文件失败: " + e.getMessage());
+        }
+        return getUrl(objectName);
+    }
+
+    @Override
+    public String getUrl(String objectName) {
+        String endpoint = aliOssProperties.getEndpoint();
+        return "https://" + properties.getBucketName() + "." + endpoint.substring(endpoint.lastIndexOf("/") + 1) + "/" + objectName;
+    }
+
+    private void putObject(String objectName, InputStream in, long size, String contentType) {
+        ObjectMetadata metadata = new ObjectMetadata();
+        metadata.setContentLength(size);
+        if (contentType != null) {
+            metadata.setContentType(contentType);
+        }
+        ossClient.putObject(new PutObjectRequest(properties.getBucketName(), objectName, in, metadata));
+    }
+
+    private void multipartUpload(String objectName, InputStream in, String contentType) throws IOException {
+        int partSize = properties.getPartSize();
+        byte[] buffer = new byte[partSize];
+        int read = in.readNBytes(buffer, 0, partSize);
+        if (read < partSize) {
+            // 大小未知但不足一个分片，直接普通上传
+            putObject(objectName, new ByteArrayInputStream(buffer, 0, read), read, contentType);
+            return;
+        }
+
+        String bucketName = properties.getBucketName();
+        InitiateMultipartUploadRequest initRequest = new InitiateMultipartUploadRequest(bucketName, objectName);
+        if (contentType != null) {
+            ObjectMetadata metadata = new ObjectMetadata();
+            metadata.setContentType(contentType);
+            initRequest.setObjectMetadata(metadata);
+        }
+        String uploadId = ossClient.initiateMultipartUpload(initRequest).getUploadId();
+
+        List<PartETag> partETags = new ArrayList<>();
+        try {
+            int partNumber = 1;
+            while (read > 0) {
+                UploadPartRequest partRequest = new UploadPartRequest();
+                partRequest.setBucketName(bucketName);
+                partRequest.setKey(objectName);
+                partRequest.setUploadId(uploadId);
+                partRequest.setPartNumber(partNumber++);
+                partRequest.setInputStream(new ByteArrayInputStream(buffer, 0, read));
+                partRequest.setPartSize(read);
+                partETags.add(ossClient.uploadPart(partRequest).getPartETag());
+
+                read = in.readNBytes(buffer, 0, partSize);
+            }
+            ossClient.completeMultipartUpload(
+                    new CompleteMultipartUploadRequest(bucketName, objectName, uploadId, partETags));
+        } catch (RuntimeException | IOException e) {
+            // 失败时放弃已上传的分片，避免残留碎片占用存储
+            ossClient.abortMultipartUpload(new AbortMultipartUploadRequest(bucketName, objectName, uploadId));
+            throw e;
+        }
+    }
+
+    // PostObject 表单上传: 上传策略限定 key、Content-Type 和 1 ~ size 字节，超出由 OSS 直接拒绝
+    @Override
+    public PresignedUploadVO presignUpload(String objectName, String contentType, long size, Duration ttl) {
+        Date expiration = new Date(System.currentTimeMillis() + ttl.toMillis());
+        PolicyConditions conditions = new PolicyConditions();
+        conditions.addConditionItem(PolicyConditions.COND_KEY, objectName);
+        conditions.addConditionItem(PolicyConditions.COND_CONTENT_TYPE, contentType);
+        conditions.addConditionItem(PolicyConditions.COND_CONTENT_LENGTH_RANGE, 1, size);
+        conditions.addConditionItem(PolicyConditions.COND_SUCCESS_ACTION_STATUS, "204");
+        String policy = Base64.getEncoder().encodeToString(
+                ossClient.generatePostPolicy(expiration, conditions).getBytes(StandardCharsets.UTF_8));
+
+        Map<String, String> fields = new LinkedHashMap<>();
+        fields.put("key", objectName);
+        fields.put("policy", policy);
+        fields.put("OSSAccessKeyId", aliOssProperties.getAccessKeyId());
+        fields.put("Signature", ossClient.calculatePostSignature(policy));
+        fields.put("Content-Type", contentType);
+        fields.put("success_action_status", "204");
+        // 表单上传地址是 bucket 域名根路径
+        return new PresignedUploadVO(objectName, getUrl(""), "POST", Map.of(), fields, expiration.getTime());
+    }
+
+    @Override
+    public StoredObjectInfo stat(String objectName) {
+        try {
+            ObjectMetadata metadata = ossClient.getObjectMetadata(properties.getBucketName(), objectName);
+            return new StoredObjectInfo(metadata.getContentLength(), metadata.getContentType());
+        } catch (OSSException oe) {
+            if (OSSErrorCode.NO_SUCH_KEY.equals(oe.getErrorCode())) {
+                return null;
+            }
+            throw oe;
+        }
+    }
+
+    @Override
+    public byte[] readHead(String objectName, int length) {
+        GetObjectRequest request = new GetObjectRequest(properties.getBucketName(), objectName);
+        request.setRange(0, length - 1);
+        try (OSSObject object = ossClient.getObject(request); InputStream in = object.getObjectContent()) {
+            return in.readNBytes(length);
+        } catch (IOException e) {
+            throw new RuntimeException("读取文件失败: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public void delete(String objectName) {
+        ossClient.deleteObject(properties.getBucketName(), objectName);
+    }
+
+    // OSS 图片处理: 访问时按长边等比缩放，结果由 OSS 缓存
+    @Override
+    public String getResizedUrl(String objectName, int maxSize) {
+        return getUrl(objectName) + "?x-oss-process=image/resize,l_" + maxSize;
+    }
+}
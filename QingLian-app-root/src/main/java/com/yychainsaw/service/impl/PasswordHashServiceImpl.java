@@ -0,0 +1,217 @@
+package com.yychainsaw.service.impl;
+
+import com.baomidou.mybatisplus.core.conditions.update.LambdaUpdateWrapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.yychainsaw.mapper.UserMapper;
+import com.yychainsaw.pojo.PasswordHashProperties;
+import com.yychainsaw.pojo.entity.User;
+import com.yychainsaw.service.PasswordHashService;
+import com.yychainsaw.utils.Md5Util;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.DelegatingPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.security.crypto.password.Pbkdf2PasswordEncoder;
+import org.springframework.stereotype.Service;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 密码哈希服务
+ * 新哈希带算法前缀存储 (如 {bcrypt}$2a$10$...)，可通过配置切换算法和代价；
+ * 没有前缀的旧数据按 MD5 校验，登录成功后在后台升级为当前算法。
+ * 哈希计算在独立的有界线程池中执行，队列满时直接拒绝，登录洪峰不会占满 Tomcat 线程。
+ * 旧哈希升级使用单独的低优先级线程池，登录校验有排队时直接跳过，不与登录抢线程和 CPU。
+ */
+@Slf4j
+@Service
+public class PasswordHashServiceImpl implements PasswordHashService {
+
+    @Autowired
+    private PasswordHashProperties properties;
+    @Autowired
+    private UserMapper userMapper;
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private PasswordEncoder encoder;
+    private ThreadPoolExecutor executor;
+    private ThreadPoolExecutor upgradeExecutor;
+
+    // 校验成功的凭据: 数据库哈希 -> 密码的 HMAC
+    private Cache<String, String> verifiedCredentials;
+    private SecretKeySpec fingerprintKey;
+
+    @PostConstruct
+    public void init() {
+        Map<String, PasswordEncoder> encoders = new HashMap<>();
+        encoders.put("bcrypt", new BCryptPasswordEncoder(properties.getBcryptCost()));
+        encoders.put("pbkdf2", Pbkdf2PasswordEncoder.defaultsForSpringSecurity_v5_8());
+        if (!encoders.containsKey(properties.getAlgorithm())) {
+            throw new IllegalStateException("不支持的密码哈希算法: " + properties.getAlgorithm());
+        }
+        DelegatingPasswordEncoder delegating = new DelegatingPasswordEncoder(properties.getAlgorithm(), encoders);
+        delegating.setDefaultPasswordEncoderForMatches(new LegacyMd5PasswordEncoder());
+        encoder = delegating;
+
+        AtomicInteger threadIndex = new AtomicInteger();
+        executor = new ThreadPoolExecutor(properties.getPoolSize(), properties.getPoolSize(),
+                0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(properties.getQueueCapacity()),
+                r -> {
+                    Thread t = new Thread(r, "password-hash-" + threadIndex.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+        ExecutorServiceMetrics.monitor(meterRegistry, executor, "passwordHash");
+
+        AtomicInteger upgradeThreadIndex = new AtomicInteger();
+        upgradeExecutor = new ThreadPoolExecutor(properties.getUpgradePoolSize(), properties.getUpgradePoolSize(),
+                0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(properties.getUpgradeQueueCapacity()),
+                r -> {
+                    Thread t = new Thread(r, "password-upgrade-" + upgradeThreadIndex.incrementAndGet());
+                    t.setDaemon(true);
+                    t.setPriority(Thread.MIN_PRIORITY);
+                    return t;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+        ExecutorServiceMetrics.monitor(meterRegistry, upgradeExecutor, "passwordUpgrade");
+
+        byte[] key = new byte[32];
+        new SecureRandom().nextBytes(key);
+        fingerprintKey = new SecretKeySpec(key, "HmacSHA256");
+        verifiedCredentials = Caffeine.newBuilder()
+                .maximumSize(properties.getCredentialCacheSize())
+                .expireAfterWrite(Duration.ofMinutes(properties.getCredentialCacheTtlMinutes()))
+                .build();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+        upgradeExecutor.shutdown();
+    }
+
+    @Override
+    public String hash(String rawPassword) {
+        return compute(() -> encoder.encode(rawPassword));
+    }
+
+    @Override
+    public boolean matches(String rawPassword, String storedHash) {
+        if (storedHash == null) {
+            return false;
+        }
+        // 最近校验成功过的 (哈希, 密码) 组合直接放行，重启后的重新登录潮不必每次都算 bcrypt
+        // key 是数据库中的哈希，改密码后自然失效；value 只存进程内随机密钥的 HMAC，不保存明文
+        String fingerprint = fingerprint(rawPassword);
+        String verified = verifiedCredentials.getIfPresent(storedHash);
+        if (verified != null && MessageDigest.isEqual(verified.getBytes(StandardCharsets.UTF_8),
+                fingerprint.getBytes(StandardCharsets.UTF_8))) {
+            return true;
+        }
+
+        boolean matched = compute(() -> encoder.matches(rawPassword, storedHash));
+        if (matched) {
+            verifiedCredentials.put(storedHash, fingerprint);
+        }
+        return matched;
+    }
+
+    private String fingerprint(String rawPassword) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(fingerprintKey);
+            return Base64.getEncoder().encodeToString(mac.doFinal(rawPassword.getBytes(StandardCharsets.UTF_8)));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public void upgradeIfNeeded(UUID userId, String rawPassword, String storedHash) {
+        if (!encoder.upgradeEncoding(storedHash)) {
+            return;
+        }
+        // 登录校验已经在排队说明 CPU 吃紧，升级可以等下次登录
+        if (!executor.getQueue().isEmpty()) {
+            log.debug("登录校验繁忙，密码哈希升级被跳过, userId: {}", userId);
+            return;
+        }
+        try {
+            upgradeExecutor.execute(() -> {
+                String newHash = encoder.encode(rawPassword);
+                // 只在哈希未被改动时写回，避免覆盖期间修改过的密码
+                LambdaUpdateWrapper<User> wrapper = new LambdaUpdateWrapper<>();
+                wrapper.eq(User::getUserId, userId)
+                        .eq(User::getPasswordHash, storedHash)
+                        .set(User::getPasswordHash, newHash);
+                userMapper.update(null, wrapper);
+            });
+        } catch (RejectedExecutionException e) {
+            // 升级队列已满时跳过，下次登录再升级
+            log.debug("密码哈希升级被跳过, userId: {}", userId);
+        }
+    }
+
+    private <T> T compute(Callable<T> task) {
+        Future<T> future;
+        try {
+            future = executor.submit(task);
+        } catch (RejectedExecutionException e) {
+            throw new RuntimeException("登录请求过多，请稍后再试");
+        }
+
+        try {
+            return future.get(properties.getTimeoutMs(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            throw new RuntimeException("登录请求过多，请稍后再试");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("登录请求被中断");
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : new RuntimeException(e.getCause());
+        }
+    }
+
+    // 兼容注册时代存储的无盐 MD5 十六进制串，只用于校验
+    private static class LegacyMd5PasswordEncoder implements PasswordEncoder {
+        @Override
+        public String encode(CharSequence rawPassword) {
+            throw new UnsupportedOperationException("MD5 只用于校验旧密码");
+        }
+
+        @Override
+        public boolean matches(CharSequence rawPassword, String encodedPassword) {
+            String md5 = Md5Util.getMD5String(rawPassword.toString());
+            return MessageDigest.isEqual(md5.getBytes(StandardCharsets.UTF_8),
+                    encodedPassword.getBytes(StandardCharsets.UTF_8));
+        }
+
+        @Override
+        public boolean upgradeEncoding(String encodedPassword) {
+            return true;
+        }
+    }
+}
@@ -2,6 +2,7 @@ package com.yychainsaw.service.impl;
 
 import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
 import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.yychainsaw.mapper.ConversationMapper;
 import com.yychainsaw.mapper.FriendshipMapper;
 import com.yychainsaw.mapper.MessageMapper;
 import com.yychainsaw.mapper.PlanMapper;
@@ -13,10 +14,12 @@ import com.yychainsaw.service.PlanService;
 import com.yychainsaw.utils.ThreadLocalUtil;
 import org.springframework.beans.BeanUtils;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -32,6 +35,10 @@ public class PlanServiceImpl implements PlanService {
     private FriendshipMapper friendshipMapper;
     @Autowired
     private MessageMapper messageMapper;
+    @Autowired
+    private ConversationMapper conversationMapper;
+    @Autowired
+    private StringRedisTemplate redisTemplate;
 
     @Override
     @Transactional(rollbackFor = Exception.class)
@@ -63,6 +70,8 @@ public class PlanServiceImpl implements PlanService {
         }
 
         String content = "我刚刚开始了一个新计划：" + plan.getTitle() + "，一起来健身吧！";
+        List<String> friendListKeys = new ArrayList<>();
+        friendListKeys.add("user:friends:" + userId);
 
         for (Friendship f : friendships) {
             // 确定接收者 ID：如果我是 user_id，朋友就是 friend_id；反之亦然
@@ -75,7 +84,12 @@ public class PlanServiceImpl implements PlanService {
             msg.setIsRead(false);
             // sent_at 由 MyBatis-Plus 自动填充
             messageMapper.insert(msg);
+
+            // 同步维护会话摘要
+            conversationMapper.upsertOnSend(userId, friendId, msg.getMsgId(), content, msg.getSentAt());
+            friendListKeys.add("user:friends:" + friendId);
         }
+        redisTemplate.delete(friendListKeys);
     }
 
     @Override
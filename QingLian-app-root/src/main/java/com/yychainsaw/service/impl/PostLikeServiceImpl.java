@@ -0,0 +1,237 @@
+package com.yychainsaw.service.impl;
+
+import com.yychainsaw.mapper.PostMapper;
+import com.yychainsaw.pojo.entity.Post;
+import com.yychainsaw.pojo.vo.PostVO;
+import com.yychainsaw.service.PostLikeService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.*;
+
+/**
+ * 帖子点赞计数
+ * post:liked:{postId}               Set，点赞用户去重
+ * post:likes:delta:{stripe}         Hash，postId -> 未落库增量，按用户分散到多个条带避免热点 key
+ * post:likes:flushing:{stripe}      Hash，正在落库的增量 (与 delta 同一个 hash tag，RENAME 可在集群下使用)
+ *                                   _flush_id 字段为本批的唯一 id，与 UPDATE 同一事务写入 post_like_flushes，
+ *                                   写库成功但 DEL 失败时下一轮不会重复累加
+ * post:likes:count                  Hash，postId -> 最近一次落库后的 likes_count，首页缓存读取时用它覆盖旧值，
+ *                                   落库不必让整页缓存失效 (TTL 远大于首页缓存的 TTL)
+ */
+@Slf4j
+@Service
+public class PostLikeServiceImpl implements PostLikeService {
+
+    private static final String FLUSH_LOCK_KEY = "post:likes:flush-lock";
+    private static final String FLUSH_ID_FIELD = "_flush_id";
+    private static final String FLUSHED_COUNT_KEY = "post:likes:count";
+    private static final Duration FLUSHED_COUNT_TTL = Duration.ofMinutes(10);
+
+    // 把 delta 原子地切换为 flushing 并打上批次 id; 已有 flushing (上一轮未完成) 时沿用它的 id
+    private static final DefaultRedisScript<String> SWITCH_SCRIPT = new DefaultRedisScript<>("""
+            if redis.call('EXISTS', KEYS[2]) == 0 then
+                if redis.call('EXISTS', KEYS[1]) == 0 then
+                    return false
+                end
+                redis.call('RENAME', KEYS[1], KEYS[2])
+            end
+            redis.call('HSETNX', KEYS[2], ARGV[2], ARGV[1])
+            return redis.call('HGET', KEYS[2], ARGV[2])
+            """, String.class);
+
+    // 只释放自己持有的锁，落库超过锁 TTL 时不会误删其他节点刚拿到的锁
+    private static final DefaultRedisScript<Long> RELEASE_SCRIPT = new DefaultRedisScript<>("""
+            if redis.call('GET', KEYS[1]) == ARGV[1] then
+                return redis.call('DEL', KEYS[1])
+            end
+            return 0
+            """, Long.class);
+
+    @Autowired
+    private StringRedisTemplate redisTemplate;
+    @Autowired
+    private PostMapper postMapper;
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Value("${qinglian.post-like.stripes:8}")
+    private int stripes;
+
+    private String getLikedKey(Long postId) {
+        return "post:liked:" + postId;
+    }
+
+    private String getDeltaKey(int stripe) {
+        return "post:likes:delta:{" + stripe + "}";
+    }
+
+    private String getFlushingKey(int stripe) {
+        return "post:likes:flushing:{" + stripe + "}";
+    }
+
+    @Override
+    public void like(Long postId, UUID userId) {
+        Long added = redisTemplate.opsForSet().add(getLikedKey(postId), userId.toString());
+        if (added == null || added == 0) {
+            throw new RuntimeException("已经点过赞了");
+        }
+        int stripe = Math.floorMod(userId.hashCode(), stripes);
+        redisTemplate.opsForHash().increment(getDeltaKey(stripe), String.valueOf(postId), 1);
+    }
+
+    @Override
+    public void applyPendingLikes(List<PostVO> posts) {
+        applyLikes(posts, false);
+    }
+
+    @Override
+    public void applyLikesToCached(List<PostVO> posts) {
+        applyLikes(posts, true);
+    }
+
+    private void applyLikes(List<PostVO> posts, boolean cached) {
+        if (posts == null || posts.isEmpty()) {
+            return;
+        }
+        List<String> fields = posts.stream().map(p -> String.valueOf(p.getPostId())).toList();
+
+        // 所有条带的 delta 与 flushing (以及缓存场景下的落库后点赞数) 一次流水线读取
+        List<Object> results = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection conn = (StringRedisConnection) connection;
+            String[] fieldArray = fields.toArray(new String[0]);
+            if (cached) {
+                conn.hMGet(FLUSHED_COUNT_KEY, fieldArray);
+            }
+            for (int i = 0; i < stripes; i++) {
+                conn.hMGet(getDeltaKey(i), fieldArray);
+                conn.hMGet(getFlushingKey(i), fieldArray);
+            }
+            return null;
+        });
+
+        if (cached) {
+            List<?> flushed = (List<?>) results.get(0);
+            for (int i = 0; i < posts.size(); i++) {
+                if (flushed.get(i) != null) {
+                    posts.get(i).setLikesCount(Integer.valueOf(flushed.get(i).toString()));
+                }
+            }
+        }
+
+        long[] pending = new long[posts.size()];
+        for (Object result : results.subList(cached ? 1 : 0, results.size())) {
+            List<?> values = (List<?>) result;
+            for (int i = 0; i < values.size(); i++) {
+                if (values.get(i) != null) {
+                    pending[i] += Long.parseLong(values.get(i).toString());
+                }
+            }
+        }
+
+        for (int i = 0; i < posts.size(); i++) {
+            PostVO post = posts.get(i);
+            int base = post.getLikesCount() == null ? 0 : post.getLikesCount();
+            post.setLikesCount((int) (base + pending[i]));
+        }
+    }
+
+    @Override
+    @Scheduled(fixedDelayString = "${qinglian.post-like.flush-interval-ms:5000}")
+    public void flushPendingLikes() {
+        // 多节点部署时只允许一个节点落库，避免同一批增量被重复累加
+        String token = UUID.randomUUID().toString();
+        Boolean locked = redisTemplate.opsForValue().setIfAbsent(FLUSH_LOCK_KEY, token, Duration.ofSeconds(60));
+        if (!Boolean.TRUE.equals(locked)) {
+            return;
+        }
+        try {
+            for (int i = 0; i < stripes; i++) {
+                flushStripe(i);
+            }
+        } finally {
+            redisTemplate.execute(RELEASE_SCRIPT, List.of(FLUSH_LOCK_KEY), token);
+        }
+    }
+
+    private void flushStripe(int stripe) {
+        String flushingKey = getFlushingKey(stripe);
+        // 上一轮遗留的 flushing 先处理，否则把当前 delta 原子地切换过来
+        String flushId = redisTemplate.execute(SWITCH_SCRIPT,
+                List.of(getDeltaKey(stripe), flushingKey), UUID.randomUUID().toString(), FLUSH_ID_FIELD);
+        if (flushId == null) {
+            return;
+        }
+
+        Map<Object, Object> entries = redisTemplate.opsForHash().entries(flushingKey);
+        Map<Long, Long> deltas = new HashMap<>();
+        entries.forEach((k, v) -> {
+            if (!FLUSH_ID_FIELD.equals(k)) {
+                deltas.put(Long.valueOf(k.toString()), Long.valueOf(v.toString()));
+            }
+        });
+
+        boolean applied = Boolean.TRUE.equals(transactionTemplate.execute(status -> {
+            // 批次 id 已存在说明上一轮已提交，只是 DEL 没有执行
+            if (postMapper.insertLikeFlush(flushId) == 0) {
+                return false;
+            }
+            if (!deltas.isEmpty()) {
+                postMapper.incrementLikes(deltas);
+            }
+            return true;
+        }));
+        if (applied) {
+            log.debug("点赞增量落库: 条带 {}, 帖子数 {}", stripe, deltas.size());
+        } else {
+            log.info("点赞批次 {} 已落库，跳过重复累加", flushId);
+        }
+        // 先记录落库后的点赞数再删除 flushing: 首页缓存中的旧值被覆盖后，增量才从读取结果中消失
+        recordFlushedCounts(deltas.keySet());
+        redisTemplate.delete(flushingKey);
+    }
+
+    private void recordFlushedCounts(Set<Long> postIds) {
+        if (postIds.isEmpty()) {
+            return;
+        }
+        Map<String, String> counts = new HashMap<>();
+        for (Post post : postMapper.selectLikesCounts(new ArrayList<>(postIds))) {
+            counts.put(String.valueOf(post.getPostId()), String.valueOf(post.getLikesCount()));
+        }
+        if (counts.isEmpty()) {
+            return;
+        }
+        redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection conn = (StringRedisConnection) connection;
+            conn.hMSet(FLUSHED_COUNT_KEY, counts);
+            conn.expire(FLUSHED_COUNT_KEY, FLUSHED_COUNT_TTL.toSeconds());
+            return null;
+        });
+    }
+
+    @Scheduled(cron = "${qinglian.post-like.flush-record-cleanup-cron:0 30 4 * * *}")
+    public void cleanupFlushRecords() {
+        // 批次记录只用于识别"已提交但未 DEL"的那一轮，保留一天足够
+        int removed = postMapper.deleteLikeFlushesBefore(LocalDateTime.now().minusDays(1));
+        if (removed > 0) {
+            log.debug("清理点赞批次记录 {} 条", removed);
+        }
+    }
+
+    @Override
+    public void clear(Long postId) {
+        redisTemplate.delete(getLikedKey(postId));
+        redisTemplate.opsForHash().delete(FLUSHED_COUNT_KEY, String.valueOf(postId));
+    }
+}
@@ -9,6 +9,7 @@ import com.github.pagehelper.Page;
 import com.github.pagehelper.PageHelper;
 import com.yychainsaw.mapper.PostMapper;
 import com.yychainsaw.mapper.UserMapper;
+import com.yychainsaw.pojo.dto.CursorPageBean;
 import com.yychainsaw.pojo.dto.PageBean;
 import com.yychainsaw.pojo.dto.PostCreateDTO;
 import com.yychainsaw.pojo.dto.PostUpdateDTO;
@@ -18,18 +19,28 @@ import com.yychainsaw.pojo.vo.GenderStatVO;
 import com.yychainsaw.pojo.vo.InfluencerVO;
 import com.yychainsaw.pojo.vo.PostVO;
 import com.yychainsaw.pojo.vo.PotentialFriendVO;
+import com.yychainsaw.service.PostLikeService;
 import com.yychainsaw.service.PostService;
+import com.yychainsaw.service.TimelineService;
+import com.yychainsaw.service.UploadService;
 import com.yychainsaw.utils.ThreadLocalUtil;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
 
 @Service
@@ -43,6 +54,20 @@ public class PostServiceImpl implements PostService {
     private StringRedisTemplate redisTemplate;
     @Autowired
     private ObjectMapper objectMapper;
+    @Autowired
+    private PostLikeService postLikeService;
+    @Autowired
+    private TimelineService timelineService;
+    @Autowired
+    private UploadService uploadService;
+
+    private static final String FEED_GEN_KEY = "post:feed:gen";
+    private static final List<Object> FEED_CACHE_FIELDS = List.of("data", "delta", "expireAt");
+    private static final long FEED_CACHE_TTL_MS = 60_000;
+    private static final double FEED_EARLY_REFRESH_BETA = 1.0;
+
+    // 本实例正在重建的首页缓存 key -> 重建结果 (JSON)
+    private final ConcurrentHashMap<String, CompletableFuture<String>> feedLoads = new ConcurrentHashMap<>();
 
     @Override
     @Transactional(rollbackFor = Exception.class)
@@ -74,59 +99,170 @@ public class PostServiceImpl implements PostService {
 
         if (dto.getImageUrls() != null) {
             post.setImageUrls(dto.getImageUrls().toArray(new String[0]));
+            post.setThumbnailUrls(dto.getImageUrls().stream()
+                    .map(uploadService::getThumbnailUrl)
+                    .toArray(String[]::new));
         }
         post.setLikesCount(bonusLikes);
 
         postMapper.insert(post);
+
+        // 事务提交后再推送到好友时间线，避免读到未提交的帖子
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                bumpFeedGeneration();
+                timelineService.onPostCreated(post);
+            }
+        });
+    }
+
+    @Override
+    public CursorPageBean<PostVO> getTimeline(Long cursor, Integer size) {
+        UUID userId = ThreadLocalUtil.getCurrentUserId();
+        return timelineService.getTimeline(userId, cursor, size);
     }
 
     @Override
     public PageBean<PostVO> getPostFeed(Integer pageNum, Integer pageSize) {
-        String key = "post:feed:page:" + pageNum + ":size:" + pageSize;
-
-        if (pageNum == 1) {
-            String cacheValue = redisTemplate.opsForValue().get(key);
-            if (StringUtils.isNotBlank(cacheValue)) {
-                try {
-                    return objectMapper.readValue(cacheValue, new TypeReference<PageBean<PostVO>>() {});
-                } catch (JsonProcessingException e) {
-                    throw new RuntimeException(e);
-                }
-            }
+        if (pageNum != 1) {
+            PageBean<PostVO> pageBean = queryPostFeed(pageNum, pageSize);
+            postLikeService.applyPendingLikes(pageBean.getItems());
+            return pageBean;
         }
 
-        PageHelper.startPage(pageNum, pageSize);
+        // 首页走缓存: key 带上代数，发帖/删帖/改帖时代数 +1，所有 size 的首页一起失效
+        String key = "post:feed:v" + currentFeedGeneration() + ":page:1:size:" + pageSize;
+        List<Object> cached = redisTemplate.opsForHash().multiGet(key, FEED_CACHE_FIELDS);
+        String json = (String) cached.get(0);
+        if (json == null || shouldRefreshEarly((String) cached.get(1), (String) cached.get(2))) {
+            json = loadFeedOnce(key, pageSize);
+        }
 
         try {
-            List<PostVO> postVOs = postMapper.selectPostFeed();
+            PageBean<PostVO> pageBean = objectMapper.readValue(json, new TypeReference<PageBean<PostVO>>() {});
+            // 缓存中的点赞数是建缓存时的数据库值，返回前换成最近落库后的值并叠加未落库的增量
+            postLikeService.applyLikesToCached(pageBean.getItems());
+            return pageBean;
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException(e);
+        }
+    }
 
+    private PageBean<PostVO> queryPostFeed(Integer pageNum, Integer pageSize) {
+        PageHelper.startPage(pageNum, pageSize);
+        try {
+            List<PostVO> postVOs = postMapper.selectPostFeed();
             Page<PostVO> p = (Page<PostVO>) postVOs;
 
             PageBean<PostVO> pageBean = new PageBean<>();
             pageBean.setTotal(p.getTotal());
             pageBean.setItems(postVOs);
+            return pageBean;
+        } finally {
+            PageHelper.clearPage();
+        }
+    }
 
-            if (pageNum == 1) {
-                try {
-                    redisTemplate.opsForValue().set(key, objectMapper.writeValueAsString(pageBean), 60, TimeUnit.SECONDS);
-                } catch (Exception ignored) {}
+    private String currentFeedGeneration() {
+        String gen = redisTemplate.opsForValue().get(FEED_GEN_KEY);
+        return gen == null ? "0" : gen;
+    }
+
+    // 帖子有写入时调用，旧代数的缓存不再被读到，等 TTL 自然过期
+    private void bumpFeedGeneration() {
+        try {
+            redisTemplate.opsForValue().increment(FEED_GEN_KEY);
+        } catch (Exception ignored) {}
+    }
+
+    // 概率提前刷新 (XFetch): 越接近过期、重建越慢，越可能由某个请求提前重建，避免同一时刻集中过期
+    private boolean shouldRefreshEarly(String delta, String expireAt) {
+        if (delta == null || expireAt == null) {
+            return true;
+        }
+        double gap = -Long.parseLong(delta) * FEED_EARLY_REFRESH_BETA * Math.log(ThreadLocalRandom.current().nextDouble());
+        return System.currentTimeMillis() + gap >= Long.parseLong(expireAt);
+    }
+
+    // 单飞加载: 同一个 key 同时只有一个请求查库，其余请求等待它的结果
+    private String loadFeedOnce(String key, Integer pageSize) {
+        CompletableFuture<String> mine = new CompletableFuture<>();
+        CompletableFuture<String> inflight = feedLoads.putIfAbsent(key, mine);
+        if (inflight != null) {
+            try {
+                return inflight.join();
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
             }
+        }
 
-            return pageBean;
+        try {
+            long start = System.currentTimeMillis();
+            String json = objectMapper.writeValueAsString(queryPostFeed(1, pageSize));
+            long now = System.currentTimeMillis();
+
+            try {
+                redisTemplate.opsForHash().putAll(key, Map.of(
+                        "data", json,
+                        "delta", String.valueOf(now - start),
+                        "expireAt", String.valueOf(now + FEED_CACHE_TTL_MS)));
+                redisTemplate.expire(key, FEED_CACHE_TTL_MS, TimeUnit.MILLISECONDS);
+            } catch (Exception ignored) {}
+
+            mine.complete(json);
+            return json;
+        } catch (JsonProcessingException e) {
+            RuntimeException ex = new RuntimeException(e);
+            mine.completeExceptionally(ex);
+            throw ex;
+        } catch (RuntimeException e) {
+            mine.completeExceptionally(e);
+            throw e;
         } finally {
-            PageHelper.clearPage();
+            feedLoads.remove(key, mine);
         }
     }
 
     @Override
-    public void likePost(Long postId) {
-        // 简单实现：直接 SQL 更新，并发高时可能不准，但符合原 SQL 逻辑
-        // UPDATE posts SET likes_count = likes_count + 1 WHERE post_id = ?
-        Post post = postMapper.selectById(postId);
-        if (post != null) {
-            post.setLikesCount(post.getLikesCount() + 1);
-            postMapper.updateById(post);
+    public CursorPageBean<PostVO> getPostFeedByCursor(String cursor, Integer size) {
+        int limit = Math.min(Math.max(size == null ? 10 : size, 1), 50);
+
+        LocalDateTime cursorTime = null;
+        Long cursorPostId = null;
+        if (StringUtils.isNotBlank(cursor)) {
+            // 游标格式: {createdAt}_{postId}
+            int sep = cursor.lastIndexOf('_');
+            try {
+                cursorTime = LocalDateTime.parse(cursor.substring(0, sep));
+                cursorPostId = Long.parseLong(cursor.substring(sep + 1));
+            } catch (RuntimeException e) {
+                throw new RuntimeException("无效的游标: " + cursor);
+            }
         }
+
+        // 多取一条用来判断是否还有下一页，省掉 count 查询
+        List<PostVO> postVOs = postMapper.selectPostFeedByCursor(cursorTime, cursorPostId, limit + 1);
+        boolean hasMore = postVOs.size() > limit;
+        if (hasMore) {
+            postVOs = postVOs.subList(0, limit);
+        }
+
+        postLikeService.applyPendingLikes(postVOs);
+
+        String nextCursor = null;
+        if (hasMore) {
+            PostVO last = postVOs.get(postVOs.size() - 1);
+            nextCursor = last.getCreatedAt() + "_" + last.getPostId();
+        }
+        return new CursorPageBean<>(postVOs, nextCursor, hasMore);
+    }
+
+    @Override
+    public void likePost(Long postId) {
+        // 点赞只写 Redis (去重 + 条带计数)，由定时任务批量落库
+        UUID userId = ThreadLocalUtil.getCurrentUserId();
+        postLikeService.like(postId, userId);
     }
 
     @Override
@@ -138,6 +274,8 @@ public class PostServiceImpl implements PostService {
         if (deleted == 0) {
             throw new RuntimeException("删除失败：帖子不存在或无权删除");
         }
+        postLikeService.clear(postId);
+        bumpFeedGeneration();
     }
 
     @Override
@@ -156,8 +294,11 @@ public class PostServiceImpl implements PostService {
         // 2. 更新内容
         post.setContent(dto.getContent());
         // 如果有图片修改逻辑：post.setImageUrls(...)
+        // 点赞数由 PostLikeService 增量累加，整行更新时不能写回旧值
+        post.setLikesCount(null);
 
         postMapper.updateById(post);
+        bumpFeedGeneration();
     }
 
     @Override
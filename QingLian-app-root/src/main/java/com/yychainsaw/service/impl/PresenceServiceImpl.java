@@ -0,0 +1,219 @@
+package com.yychainsaw.service.impl;
+
+import com.yychainsaw.pojo.PresenceProperties;
+import com.yychainsaw.service.PresenceService;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.connection.RedisStringCommands.SetOption;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.types.Expiration;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 在线状态
+ *
+ * 本机: 按 userId 分片的内存表 (userId -> sessionId -> 最近一次入站时间)，连接 / 断开 / 心跳只改内存。
+ * 集群: presence:{userId} = 节点 ID，带 TTL。用户首次上线时立即写入，之后每秒轮流刷新一个分片的 TTL (管道批量)，
+ * 节点宕机后最多 ttlSeconds 自动下线。用户在本机的最后一个会话断开时，只删除本节点写入的标记。
+ */
+@Slf4j
+@Service
+public class PresenceServiceImpl implements PresenceService {
+
+    private static final String PRESENCE_KEY_PREFIX = "presence:";
+
+    // 只删除本节点写的标记，用户若同时连在别的节点，由那个节点下次刷新时补回
+    private static final DefaultRedisScript<Long> RELEASE_SCRIPT = new DefaultRedisScript<>("""
+            if redis.call('GET', KEYS[1]) == ARGV[1] then
+                return redis.call('DEL', KEYS[1])
+            end
+            return 0
+            """, Long.class);
+
+    @Autowired
+    private PresenceProperties properties;
+    @Autowired
+    private StringRedisTemplate redisTemplate;
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private final String nodeId = UUID.randomUUID().toString();
+
+    private List<Map<UUID, Map<String, Long>>> shards;
+    // sessionId -> userId
+    private final Map<String, UUID> sessionUsers = new ConcurrentHashMap<>();
+    private int refreshCursor;
+
+    @PostConstruct
+    public void init() {
+        List<Map<UUID, Map<String, Long>>> list = new ArrayList<>(properties.getShards());
+        for (int i = 0; i < properties.getShards(); i++) {
+            list.add(new ConcurrentHashMap<>());
+        }
+        shards = list;
+        meterRegistry.gauge("qinglian.presence.local.users", shards,
+                s -> s.stream().mapToInt(Map::size).sum());
+        meterRegistry.gauge("qinglian.presence.local.sessions", sessionUsers, Map::size);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        for (Map<UUID, Map<String, Long>> shard : shards) {
+            shard.keySet().forEach(this::release);
+        }
+    }
+
+    @Override
+    public void online(UUID userId, String sessionId) {
+        long now = System.currentTimeMillis();
+        sessionUsers.put(sessionId, userId);
+        boolean[] first = {false};
+        shardOf(userId).compute(userId, (key, sessions) -> {
+            if (sessions == null) {
+                sessions = new ConcurrentHashMap<>();
+                first[0] = true;
+            }
+            sessions.put(sessionId, now);
+            return sessions;
+        });
+        if (first[0]) {
+            try {
+                redisTemplate.opsForValue().set(getPresenceKey(userId), nodeId,
+                        Duration.ofSeconds(properties.getTtlSeconds()));
+            } catch (Exception e) {
+                // 写失败不影响连接，等分片刷新时补上
+                log.warn("在线标记写入失败, userId: {}", userId, e);
+            }
+        }
+    }
+
+    @Override
+    public void offline(String sessionId) {
+        UUID userId = sessionUsers.remove(sessionId);
+        if (userId == null) {
+            return;
+        }
+        boolean[] last = {false};
+        shardOf(userId).computeIfPresent(userId, (key, sessions) -> {
+            sessions.remove(sessionId);
+            if (sessions.isEmpty()) {
+                last[0] = true;
+                return null;
+            }
+            return sessions;
+        });
+        if (last[0]) {
+            release(userId);
+        }
+    }
+
+    @Override
+    public void touch(String sessionId) {
+        UUID userId = sessionUsers.get(sessionId);
+        if (userId == null) {
+            return;
+        }
+        Map<String, Long> sessions = shardOf(userId).get(userId);
+        if (sessions != null) {
+            sessions.computeIfPresent(sessionId, (key, lastActive) -> System.currentTimeMillis());
+        }
+    }
+
+    @Override
+    public boolean isOnline(UUID userId) {
+        return !getOnlineUsers(List.of(userId)).isEmpty();
+    }
+
+    @Override
+    public Set<UUID> getOnlineUsers(Collection<UUID> userIds) {
+        Set<UUID> online = new HashSet<>();
+        List<UUID> remote = new ArrayList<>();
+        for (UUID userId : userIds) {
+            // 连在本机的不用查 Redis
+            if (shardOf(userId).containsKey(userId)) {
+                online.add(userId);
+            } else {
+                remote.add(userId);
+            }
+        }
+        if (remote.isEmpty()) {
+            return online;
+        }
+        try {
+            List<String> values = redisTemplate.opsForValue().multiGet(
+                    remote.stream().map(this::getPresenceKey).toList());
+            for (int i = 0; values != null && i < remote.size(); i++) {
+                if (values.get(i) != null) {
+                    online.add(remote.get(i));
+                }
+            }
+        } catch (Exception e) {
+            log.warn("在线状态批量查询失败, 仅返回本机结果", e);
+        }
+        return online;
+    }
+
+    // 每秒处理一个分片: 清理长时间无入站帧的会话，并续期其余用户的在线标记
+    @Scheduled(fixedDelay = 1000)
+    public void refreshShard() {
+        Map<UUID, Map<String, Long>> shard = shards.get(refreshCursor);
+        refreshCursor = (refreshCursor + 1) % shards.size();
+        if (shard.isEmpty()) {
+            return;
+        }
+
+        if (properties.getIdleTimeoutMs() > 0) {
+            long deadline = System.currentTimeMillis() - properties.getIdleTimeoutMs();
+            List<String> idle = new ArrayList<>();
+            shard.values().forEach(sessions -> sessions.forEach((sessionId, lastActive) -> {
+                if (lastActive < deadline) {
+                    idle.add(sessionId);
+                }
+            }));
+            idle.forEach(this::offline);
+        }
+
+        List<UUID> users = new ArrayList<>(shard.keySet());
+        if (users.isEmpty()) {
+            return;
+        }
+        Expiration ttl = Expiration.seconds(properties.getTtlSeconds());
+        try {
+            redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                StringRedisConnection conn = (StringRedisConnection) connection;
+                users.forEach(userId -> conn.set(getPresenceKey(userId), nodeId, ttl,
+                        SetOption.upsert()));
+                return null;
+            });
+        } catch (Exception e) {
+            log.warn("在线标记续期失败, 用户数: {}", users.size(), e);
+        }
+    }
+
+    private void release(UUID userId) {
+        try {
+            redisTemplate.execute(RELEASE_SCRIPT, List.of(getPresenceKey(userId)), nodeId);
+        } catch (Exception e) {
+            log.warn("在线标记删除失败, userId: {}", userId, e);
+        }
+    }
+
+    private Map<UUID, Map<String, Long>> shardOf(UUID userId) {
+        return shards.get(Math.floorMod(userId.hashCode(), shards.size()));
+    }
+
+    private String getPresenceKey(UUID userId) {
+        return PRESENCE_KEY_PREFIX + userId;
+    }
+}
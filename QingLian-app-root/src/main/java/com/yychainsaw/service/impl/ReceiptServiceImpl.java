@@ -0,0 +1,248 @@
+package com.yychainsaw.service.impl;
+
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.yychainsaw.mapper.ConversationMapper;
+import com.yychainsaw.mapper.FriendshipMapper;
+import com.yychainsaw.mapper.MessageMapper;
+import com.yychainsaw.pojo.entity.Friendship;
+import com.yychainsaw.pojo.vo.ReadReceiptVO;
+import com.yychainsaw.pojo.vo.TypingVO;
+import com.yychainsaw.service.BadgeService;
+import com.yychainsaw.service.GroupUnreadService;
+import com.yychainsaw.service.MessageDeliveryService;
+import com.yychainsaw.service.ReceiptService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 已读回执 / 正在输入的合并管道
+ *
+ * 信号先按会话合并在内存里 (已读取最大水位，输入状态取最新值)，每 windowMs 统一处理一次:
+ * 私聊已读写一次 messages 水位并给发送者推 /user/queue/read-receipts，群聊已读写一次 group_read_status；
+ * 输入状态只在变化时推送 /user/queue/typing (仅限好友)，持续输入每 typingRefreshMs 续推一次。
+ */
+@Slf4j
+@Service
+public class ReceiptServiceImpl implements ReceiptService {
+
+    private static final String READ_RECEIPT_DESTINATION = "/queue/read-receipts";
+    private static final String TYPING_DESTINATION = "/queue/typing";
+
+    @Autowired
+    private MessageMapper messageMapper;
+    @Autowired
+    private ConversationMapper conversationMapper;
+    @Autowired
+    private FriendshipMapper friendshipMapper;
+    @Autowired
+    private StringRedisTemplate redisTemplate;
+    @Autowired
+    private GroupUnreadService groupUnreadService;
+    @Autowired
+    private BadgeService badgeService;
+    @Autowired
+    private MessageDeliveryService messageDeliveryService;
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${qinglian.receipt.typing-refresh-ms:3000}")
+    private long typingRefreshMs;
+
+    // 会话 -> 窗口内合并后的信号，只在 compute / remove 中读写
+    private final Map<String, PendingRead> pendingReads = new ConcurrentHashMap<>();
+    private final Map<String, PendingRead> pendingGroupReads = new ConcurrentHashMap<>();
+    private final Map<String, PendingTyping> pendingTyping = new ConcurrentHashMap<>();
+    // 已推送给对方 "正在输入" 的会话 -> 推送时间
+    private final Map<String, Long> typingForwardedAt = new ConcurrentHashMap<>();
+
+    private Counter readSignalCounter;
+    private Counter readWriteCounter;
+    private Counter readWriteSavedCounter;
+    private Counter typingSignalCounter;
+    private Counter typingForwardedCounter;
+
+    private static class PendingRead {
+        final UUID userId;
+        final UUID peerId;   // 私聊: 消息发送者
+        final Long groupId;  // 群聊
+        long lastMsgId;
+        int signals;
+
+        PendingRead(UUID userId, UUID peerId, Long groupId) {
+            this.userId = userId;
+            this.peerId = peerId;
+            this.groupId = groupId;
+        }
+    }
+
+    private static class PendingTyping {
+        final UUID userId;
+        final UUID peerId;
+        boolean typing;
+
+        PendingTyping(UUID userId, UUID peerId) {
+            this.userId = userId;
+            this.peerId = peerId;
+        }
+    }
+
+    @PostConstruct
+    public void init() {
+        readSignalCounter = meterRegistry.counter("qinglian.receipt.read.signals");
+        readWriteCounter = meterRegistry.counter("qinglian.receipt.read.writes");
+        readWriteSavedCounter = meterRegistry.counter("qinglian.receipt.read.writes.saved");
+        typingSignalCounter = meterRegistry.counter("qinglian.receipt.typing.signals");
+        typingForwardedCounter = meterRegistry.counter("qinglian.receipt.typing.forwarded");
+    }
+
+    // 关闭前把窗口内的已读水位写掉
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+
+    private String getConversationKey(UUID userId, Object peer) {
+        return userId + ":" + peer;
+    }
+
+    @Override
+    public void onRead(UUID readerId, UUID peerId, long lastMsgId) {
+        readSignalCounter.increment();
+        pendingReads.compute(getConversationKey(readerId, peerId), (key, pending) -> {
+            if (pending == null) {
+                pending = new PendingRead(readerId, peerId, null);
+            }
+            pending.lastMsgId = Math.max(pending.lastMsgId, lastMsgId);
+            pending.signals++;
+            return pending;
+        });
+    }
+
+    @Override
+    public void onGroupRead(UUID userId, Long groupId, long lastMsgId) {
+        readSignalCounter.increment();
+        pendingGroupReads.compute(getConversationKey(userId, groupId), (key, pending) -> {
+            if (pending == null) {
+                pending = new PendingRead(userId, null, groupId);
+            }
+            pending.lastMsgId = Math.max(pending.lastMsgId, lastMsgId);
+            pending.signals++;
+            return pending;
+        });
+    }
+
+    @Override
+    public void onTyping(UUID userId, UUID peerId, boolean typing) {
+        typingSignalCounter.increment();
+        pendingTyping.compute(getConversationKey(userId, peerId), (key, pending) -> {
+            if (pending == null) {
+                pending = new PendingTyping(userId, peerId);
+            }
+            pending.typing = typing;
+            return pending;
+        });
+    }
+
+    @Scheduled(fixedDelayString = "${qinglian.receipt.window-ms:500}")
+    public void flush() {
+        for (String key : new ArrayList<>(pendingReads.keySet())) {
+            PendingRead pending = pendingReads.remove(key);
+            if (pending != null) {
+                applyRead(pending);
+            }
+        }
+        for (String key : new ArrayList<>(pendingGroupReads.keySet())) {
+            PendingRead pending = pendingGroupReads.remove(key);
+            if (pending != null) {
+                applyGroupRead(pending);
+            }
+        }
+        long now = System.currentTimeMillis();
+        for (String key : new ArrayList<>(pendingTyping.keySet())) {
+            PendingTyping pending = pendingTyping.remove(key);
+            if (pending != null) {
+                forwardTyping(key, pending, now);
+            }
+        }
+        // 客户端异常退出没发 "停止输入" 时，对方界面自行超时，这里只清理记录
+        typingForwardedAt.values().removeIf(at -> now - at > typingRefreshMs * 3);
+    }
+
+    private void applyRead(PendingRead pending) {
+        try {
+            int rows = messageMapper.markReadUpTo(pending.userId, pending.peerId, pending.lastMsgId);
+            recordWrite(pending);
+            if (rows == 0) {
+                return;
+            }
+            // 水位之后可能还有未读消息，只扣掉本次标记的条数
+            if (conversationMapper.decrementUnread(pending.userId, pending.peerId, rows) > 0) {
+                redisTemplate.delete("user:friends:" + pending.userId);
+            }
+            badgeService.add(pending.userId, BadgeService.MESSAGES, -rows);
+            messageDeliveryService.sendToUser(pending.peerId.toString(), READ_RECEIPT_DESTINATION,
+                    new ReadReceiptVO(pending.userId.toString(), pending.lastMsgId));
+        } catch (Exception e) {
+            log.error("已读水位写入失败, userId: {}, peerId: {}", pending.userId, pending.peerId, e);
+        }
+    }
+
+    private void applyGroupRead(PendingRead pending) {
+        try {
+            Long watermark = messageMapper.markGroupAsRead(pending.groupId, pending.userId, pending.lastMsgId);
+            groupUnreadService.onGroupRead(pending.groupId, pending.userId, watermark);
+            recordWrite(pending);
+        } catch (Exception e) {
+            log.error("群已读水位写入失败, userId: {}, groupId: {}", pending.userId, pending.groupId, e);
+        }
+    }
+
+    private boolean isFriend(UUID userId, UUID peerId) {
+        LambdaQueryWrapper<Friendship> wrapper = new LambdaQueryWrapper<>();
+        wrapper.eq(Friendship::getStatus, "ACCEPTED")
+                .and(w -> w
+                        .and(a -> a.eq(Friendship::getUserId, userId).eq(Friendship::getFriendId, peerId))
+                        .or(b -> b.eq(Friendship::getUserId, peerId).eq(Friendship::getFriendId, userId)));
+        return friendshipMapper.selectCount(wrapper) > 0;
+    }
+
+    private void recordWrite(PendingRead pending) {
+        readWriteCounter.increment();
+        readWriteSavedCounter.increment(pending.signals - 1);
+    }
+
+    private void forwardTyping(String key, PendingTyping pending, long now) {
+        Long forwardedAt = typingForwardedAt.get(key);
+        if (pending.typing) {
+            // 已经推过 "正在输入" 且未到续推时间，不再重复推送
+            if (forwardedAt != null && now - forwardedAt < typingRefreshMs) {
+                return;
+            }
+            // 只转发给好友，续推时也重新校验 (期间可能已删除好友)
+            if (!isFriend(pending.userId, pending.peerId)) {
+                typingForwardedAt.remove(key);
+                return;
+            }
+            typingForwardedAt.put(key, now);
+        } else if (typingForwardedAt.remove(key) == null) {
+            // 对方本来就没看到 "正在输入"
+            return;
+        }
+        typingForwardedCounter.increment();
+        messageDeliveryService.sendToUser(pending.peerId.toString(), TYPING_DESTINATION,
+                new TypingVO(pending.userId.toString(), pending.typing));
+    }
+}
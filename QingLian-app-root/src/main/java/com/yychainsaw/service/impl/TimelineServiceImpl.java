@@ -0,0 +1,204 @@
+package com.yychainsaw.service.impl;
+
+import com.yychainsaw.mapper.FriendshipMapper;
+import com.yychainsaw.mapper.PostMapper;
+import com.yychainsaw.pojo.dto.CursorPageBean;
+import com.yychainsaw.pojo.entity.Post;
+import com.yychainsaw.pojo.vo.PostVO;
+import com.yychainsaw.service.PostLikeService;
+import com.yychainsaw.service.TimelineService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * 好友动态时间线 (写扩散)
+ * timeline:{userId}      ZSet，member/score 都是 postId (自增，天然有序且唯一，可直接作为游标)
+ * timeline:celebrities   Set，好友数超过阈值的作者，发帖不扩散，读取时按需拉取
+ * timeline:celebrities:{userId}  Set，该用户好友中的大V (与全局集合求交后缓存)，读取时只拉取这些作者
+ * 时间线只写入已存在的 key，过期或失效后读取时从数据库重建
+ */
+@Service
+public class TimelineServiceImpl implements TimelineService {
+
+    private static final String CELEBRITIES_KEY = "timeline:celebrities";
+    // 占位成员，空时间线也保留 key，避免每次读取都重建
+    private static final String PLACEHOLDER = "0";
+
+    @Autowired
+    private StringRedisTemplate redisTemplate;
+    @Autowired
+    private FriendshipMapper friendshipMapper;
+    @Autowired
+    private PostMapper postMapper;
+    @Autowired
+    private PostLikeService postLikeService;
+
+    @Value("${qinglian.timeline.max-length:500}")
+    private int maxLength;
+    @Value("${qinglian.timeline.fanout-threshold:1000}")
+    private int fanoutThreshold;
+    @Value("${qinglian.timeline.ttl-days:7}")
+    private long ttlDays;
+
+    private String getTimelineKey(UUID userId) {
+        return "timeline:" + userId;
+    }
+
+    private String getFollowedCelebritiesKey(UUID userId) {
+        return CELEBRITIES_KEY + ":" + userId;
+    }
+
+    @Override
+    public void onPostCreated(Post post) {
+        UUID authorId = post.getUserId();
+        List<UUID> friendIds = friendshipMapper.selectFriendIds(authorId);
+
+        List<UUID> targets = new ArrayList<>();
+        targets.add(authorId);
+        if (friendIds.size() > fanoutThreshold) {
+            // 大V: 只写自己的时间线，好友读取时拉取
+            Long added = redisTemplate.opsForSet().add(CELEBRITIES_KEY, authorId.toString());
+            if (added != null && added > 0) {
+                // 刚成为大V: 好友缓存的大V列表里还没有他，删掉等读取时重建
+                redisTemplate.delete(friendIds.stream().map(this::getFollowedCelebritiesKey).toList());
+            }
+        } else {
+            targets.addAll(friendIds);
+        }
+
+        // 先批量判断哪些时间线存在，只向已有的时间线追加
+        List<Object> exists = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection conn = (StringRedisConnection) connection;
+            targets.forEach(id -> conn.exists(getTimelineKey(id)));
+            return null;
+        });
+
+        String member = String.valueOf(post.getPostId());
+        double score = post.getPostId();
+        redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection conn = (StringRedisConnection) connection;
+            for (int i = 0; i < targets.size(); i++) {
+                if (Boolean.TRUE.equals(exists.get(i))) {
+                    String key = getTimelineKey(targets.get(i));
+                    conn.zAdd(key, score, member);
+                    conn.zRemRange(key, 1, -(maxLength + 1)); // rank 0 是占位成员，保留最新 maxLength 条
+                }
+            }
+            return null;
+        });
+    }
+
+    @Override
+    public CursorPageBean<PostVO> getTimeline(UUID userId, Long cursor, Integer size) {
+        int pageSize = (size == null || size <= 0) ? 10 : Math.min(size, 50);
+        long max = cursor == null ? Long.MAX_VALUE : cursor - 1;
+        String key = getTimelineKey(userId);
+
+        if (!Boolean.TRUE.equals(redisTemplate.hasKey(key))) {
+            rebuild(userId);
+        }
+        redisTemplate.expire(key, Duration.ofDays(ttlDays));
+
+        // 1. 推模式: 时间线中的 postId
+        Set<String> pushed = redisTemplate.opsForZSet().reverseRangeByScore(key, 1, max, 0, pageSize + 1);
+        TreeSet<Long> candidates = new TreeSet<>(Comparator.reverseOrder());
+        if (pushed != null) {
+            pushed.forEach(id -> candidates.add(Long.valueOf(id)));
+        }
+
+        // 2. 拉模式: 好友中的大V
+        List<UUID> authorIds = getFollowedCelebrities(userId);
+        if (!authorIds.isEmpty()) {
+            candidates.addAll(postMapper.selectFriendPostIdsByAuthors(userId, authorIds, max, pageSize + 1));
+        }
+
+        List<Long> pageIds = candidates.stream().limit(pageSize).collect(Collectors.toList());
+        boolean hasMore = candidates.size() > pageSize;
+
+        List<PostVO> items = hydrate(pageIds);
+        String nextCursor = hasMore ? String.valueOf(pageIds.get(pageIds.size() - 1)) : null;
+        return new CursorPageBean<>(items, nextCursor, hasMore);
+    }
+
+    // 按 id 批量查询帖子并保持时间线顺序，已删除的帖子直接跳过
+    private List<PostVO> hydrate(List<Long> postIds) {
+        if (postIds.isEmpty()) {
+            return new ArrayList<>();
+        }
+        Map<Long, PostVO> byId = postMapper.selectPostVOsByIds(postIds).stream()
+                .collect(Collectors.toMap(PostVO::getPostId, Function.identity()));
+        List<PostVO> posts = postIds.stream()
+                .map(byId::get)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+        postLikeService.applyPendingLikes(posts);
+        return posts;
+    }
+
+    private void rebuild(UUID userId) {
+        List<Long> postIds = postMapper.selectTimelinePostIds(userId, maxLength);
+        String key = getTimelineKey(userId);
+        redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection conn = (StringRedisConnection) connection;
+            conn.zAdd(key, 0, PLACEHOLDER);
+            postIds.forEach(id -> conn.zAdd(key, id, String.valueOf(id)));
+            return null;
+        });
+    }
+
+    // 全局大V集合会越来越大，每次读取只取与自己好友的交集，交集结果随时间线一起缓存
+    private List<UUID> getFollowedCelebrities(UUID userId) {
+        String key = getFollowedCelebritiesKey(userId);
+        Set<String> cached = redisTemplate.opsForSet().members(key);
+        if (cached == null || cached.isEmpty()) {
+            cached = rebuildFollowedCelebrities(userId);
+        } else {
+            redisTemplate.expire(key, Duration.ofDays(ttlDays));
+        }
+        return cached.stream()
+                .filter(id -> !PLACEHOLDER.equals(id))
+                .map(UUID::fromString)
+                .collect(Collectors.toList());
+    }
+
+    private Set<String> rebuildFollowedCelebrities(UUID userId) {
+        Set<String> result = new HashSet<>();
+        result.add(PLACEHOLDER);
+        List<UUID> friendIds = friendshipMapper.selectFriendIds(userId);
+        if (!friendIds.isEmpty()) {
+            // SMISMEMBER 一次判断所有好友
+            Map<Object, Boolean> flags = redisTemplate.opsForSet()
+                    .isMember(CELEBRITIES_KEY, friendIds.stream().map(UUID::toString).toArray());
+            if (flags != null) {
+                flags.forEach((id, celebrity) -> {
+                    if (Boolean.TRUE.equals(celebrity)) {
+                        result.add(id.toString());
+                    }
+                });
+            }
+        }
+
+        String key = getFollowedCelebritiesKey(userId);
+        redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection conn = (StringRedisConnection) connection;
+            conn.sAdd(key, result.toArray(new String[0]));
+            conn.expire(key, Duration.ofDays(ttlDays).toSeconds());
+            return null;
+        });
+        return result;
+    }
+
+    @Override
+    public void invalidate(UUID userId) {
+        redisTemplate.delete(List.of(getTimelineKey(userId), getFollowedCelebritiesKey(userId)));
+    }
+}
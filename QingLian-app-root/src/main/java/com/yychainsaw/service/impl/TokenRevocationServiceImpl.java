@@ -0,0 +1,82 @@
+package com.yychainsaw.service.impl;
+
+import com.yychainsaw.service.TokenRevocationService;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 已吊销 token 名单
+ * Redis zset (score = token 过期时间) 是权威数据，启动和定时任务全量加载；
+ * 吊销时通过发布订阅推送到所有节点，请求路径只查本地 Map
+ */
+@Service
+public class TokenRevocationServiceImpl implements TokenRevocationService, MessageListener {
+
+    private static final String REVOKED_KEY = "auth:revoked";
+    private static final String REVOKED_CHANNEL = "auth:revoked";
+
+    @Autowired
+    private StringRedisTemplate redisTemplate;
+    @Autowired
+    private RedisMessageListenerContainer listenerContainer;
+
+    // tokenId -> 过期时间 (毫秒)，只保留未过期的记录，规模受 token 有效期限制
+    private final Map<String, Long> revoked = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        listenerContainer.addMessageListener(this, new ChannelTopic(REVOKED_CHANNEL));
+        resync();
+    }
+
+    @Override
+    public void revoke(String tokenId, Date expiresAt) {
+        long expireAt = expiresAt == null ? System.currentTimeMillis() : expiresAt.getTime();
+        revoked.put(tokenId, expireAt);
+        redisTemplate.opsForZSet().add(REVOKED_KEY, tokenId, expireAt);
+        redisTemplate.convertAndSend(REVOKED_CHANNEL, tokenId + ":" + expireAt);
+    }
+
+    @Override
+    public boolean isRevoked(String tokenId) {
+        return revoked.containsKey(tokenId);
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        int sep = body.lastIndexOf(':');
+        revoked.put(body.substring(0, sep), Long.parseLong(body.substring(sep + 1)));
+    }
+
+    // 兜底: 节点启动或订阅断线期间可能错过消息，定时从 zset 全量同步，同时清理已过期的记录
+    @Scheduled(fixedDelayString = "${qinglian.auth.revocation-resync-ms:60000}",
+            initialDelayString = "${qinglian.auth.revocation-resync-ms:60000}")
+    public void resync() {
+        long now = System.currentTimeMillis();
+        redisTemplate.opsForZSet().removeRangeByScore(REVOKED_KEY, 0, now);
+
+        Set<ZSetOperations.TypedTuple<String>> tuples =
+                redisTemplate.opsForZSet().rangeByScoreWithScores(REVOKED_KEY, now, Double.MAX_VALUE);
+        if (tuples != null) {
+            for (ZSetOperations.TypedTuple<String> tuple : tuples) {
+                revoked.put(tuple.getValue(), tuple.getScore().longValue());
+            }
+        }
+        revoked.values().removeIf(expireAt -> expireAt <= now);
+    }
+}
@@ -0,0 +1,403 @@
+package com.yychainsaw.service.impl;
+
+import com.yychainsaw.pojo.FileStorageProperties;
+import com.yychainsaw.pojo.ImageProcessingProperties;
+import com.yychainsaw.pojo.ProcessedImage;
+import com.yychainsaw.pojo.StoredObjectInfo;
+import com.yychainsaw.pojo.dto.UploadPresignDTO;
+import com.yychainsaw.pojo.vo.PresignedUploadVO;
+import com.yychainsaw.service.FileStorageService;
+import com.yychainsaw.service.ImageProcessingService;
+import com.yychainsaw.service.UploadService;
+import com.yychainsaw.utils.ThreadLocalUtil;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 图片上传
+ * 原图经 ImageProcessingService 处理 (去元数据、限制尺寸) 后保存，同时保存各尺寸缩略图。
+ * 客户端直传 (presign + complete) 的图片放在 direct/ 下，不经过服务端处理和去重；
+ * 凭证过期仍未 complete 的对象由 cleanupOrphanedDirectUploads 删除 (upload:pending:index 按过期时间排序)。
+ * 经过处理的上传按原始内容的 SHA-256 去重: upload:sha256:{存储类型}:{摘要} -> 对象名，
+ * 索引带 TTL，命中时确认对象仍存在，已被删除的对象不会再被返回。
+ * 批量上传在专用的有界线程池中并发执行 (不占用公共 ForkJoinPool)，
+ * 队列满时由请求线程自己上传，天然形成背压。
+ * 原图需整体读入内存解码，读入前按大小从 processingBytes 预占额度 (KB)，并发大图上传不会撑爆堆。
+ */
+@Slf4j
+@Service
+public class UploadServiceImpl implements UploadService {
+
+    // 允许上传的文件类型白名单
+    private static final List<String> ALLOWED_EXTENSIONS = Arrays.asList(".jpg", ".jpeg", ".png", ".gif", ".webp");
+    private static final String DIRECT_PREFIX = "direct/"; // 客户端直传的对象
+    private static final String PENDING_INDEX_KEY = "upload:pending:index"; // ZSet，对象名 -> 凭证过期时间
+    private static final Pattern OBJECT_NAME = Pattern.compile("^([0-9a-f]{8}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{12})(\\.[a-z]+)$");
+
+    @Autowired
+    private FileStorageService fileStorageService;
+    @Autowired
+    private FileStorageProperties properties;
+    @Autowired
+    private MeterRegistry meterRegistry;
+    @Autowired
+    private ImageProcessingService imageProcessingService;
+    @Autowired
+    private ImageProcessingProperties imageProperties;
+    @Autowired
+    private StringRedisTemplate redisTemplate;
+
+    private ThreadPoolExecutor executor;
+    private Semaphore processingBytes;
+    private int processingPermits;
+    private Counter dedupeHitCounter;
+    private Counter bytesSavedCounter;
+
+    @PostConstruct
+    public void init() {
+        AtomicInteger threadIndex = new AtomicInteger();
+        executor = new ThreadPoolExecutor(properties.getUploadThreads(), properties.getUploadThreads(),
+                60L, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(properties.getUploadQueueCapacity()),
+                r -> {
+                    Thread t = new Thread(r, "file-upload-" + threadIndex.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                },
+                new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.allowCoreThreadTimeOut(true);
+        processingPermits = (int) Math.max(1, Math.min(Integer.MAX_VALUE, imageProperties.getMaxInFlightBytes() / 1024));
+        processingBytes = new Semaphore(processingPermits, true);
+        ExecutorServiceMetrics.monitor(meterRegistry, executor, "fileUpload");
+        dedupeHitCounter = meterRegistry.counter("qinglian.upload.dedupe.hits");
+        bytesSavedCounter = Counter.builder("qinglian.upload.dedupe.saved")
+                .description("因内容重复而跳过处理和写入的原始字节数")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    @Override
+    public String uploadImage(MultipartFile file) {
+        if (file.isEmpty()) {
+            throw new IllegalArgumentException("上传文件不能为空");
+        }
+        log.info(">>> 线程 [{}] 正在处理文件: {}", Thread.currentThread().getName(), file.getOriginalFilename());
+
+        try (InputStream in = file.getInputStream()) {
+            return storeImage(file.getOriginalFilename(), in, file.getSize(), file.getContentType());
+        } catch (IOException e) {
+            throw new RuntimeException("读取上传文件失败: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public List<String> uploadImages(MultipartFile[] files) {
+        List<CompletableFuture<String>> futures = Arrays.stream(files)
+                .map(file -> CompletableFuture.supplyAsync(() -> {
+                    try {
+                        return uploadImage(file);
+                    } catch (RuntimeException e) {
+                        throw new RuntimeException("文件 " + file.getOriginalFilename() + " 上传失败: " + e.getMessage());
+                    }
+                }, executor))
+                .toList();
+
+        // MultipartFile 的临时文件在请求结束后删除，必须等全部上传完再返回
+        try {
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+        }
+        return futures.stream().map(CompletableFuture::join).toList();
+    }
+
+    @Override
+    public String uploadImageStream(String filename, String contentType, long size, InputStream in) {
+        try {
+            return storeImage(filename, in, size, contentType);
+        } catch (IOException e) {
+            throw new RuntimeException("读取上传文件失败: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public PresignedUploadVO presignImageUpload(UploadPresignDTO dto) {
+        String extension = getExtension(dto.getFilename());
+        if (!dto.getContentType().startsWith("image/")) {
+            throw new IllegalArgumentException("不支持的文件格式，仅支持图片");
+        }
+        if (dto.getSize() > imageProperties.getMaxSourceBytes()) {
+            throw new IllegalArgumentException("图片过大，最大支持 " + imageProperties.getMaxSourceBytes() / 1024 / 1024 + "MB");
+        }
+
+        String objectName = DIRECT_PREFIX + UUID.randomUUID() + extension;
+        Duration ttl = Duration.ofSeconds(properties.getPresignTtlSeconds());
+        PresignedUploadVO presigned = fileStorageService.presignUpload(objectName, dto.getContentType(), dto.getSize(), ttl);
+
+        // 记录凭证归属，完成回调时只接受本人申请的对象
+        Duration pendingTtl = ttl.plusMinutes(10);
+        redisTemplate.opsForValue().set(getPendingKey(objectName), ThreadLocalUtil.getCurrentUserId().toString(),
+                pendingTtl);
+        redisTemplate.opsForZSet().add(PENDING_INDEX_KEY, objectName, System.currentTimeMillis() + pendingTtl.toMillis());
+        return presigned;
+    }
+
+    @Override
+    public String completeImageUpload(String objectName) {
+        String pendingKey = getPendingKey(objectName);
+        String owner = redisTemplate.opsForValue().get(pendingKey);
+        if (owner == null || !owner.equals(ThreadLocalUtil.getCurrentUserId().toString())) {
+            throw new RuntimeException("上传凭证不存在或已过期");
+        }
+
+        StoredObjectInfo info = fileStorageService.stat(objectName);
+        if (info == null) {
+            throw new RuntimeException("文件尚未上传完成");
+        }
+        try {
+            if (info.getSize() > imageProperties.getMaxSourceBytes()) {
+                throw new IllegalArgumentException("图片过大，最大支持 " + imageProperties.getMaxSourceBytes() / 1024 / 1024 + "MB");
+            }
+            if (!isImageHeader(fileStorageService.readHead(objectName, 12))) {
+                throw new IllegalArgumentException("文件内容不是有效的图片");
+            }
+        } catch (RuntimeException e) {
+            // 校验不通过的对象立即删除，不留在存储里
+            fileStorageService.delete(objectName);
+            redisTemplate.delete(pendingKey);
+            redisTemplate.opsForZSet().remove(PENDING_INDEX_KEY, objectName);
+            throw e;
+        }
+
+        redisTemplate.delete(pendingKey);
+        redisTemplate.opsForZSet().remove(PENDING_INDEX_KEY, objectName);
+        return fileStorageService.getUrl(objectName);
+    }
+
+    // 申请了凭证但没有 complete 的直传对象 (客户端中途放弃、complete 失败) 在凭证过期后删除
+    @Scheduled(fixedDelayString = "${qinglian.storage.orphan-cleanup-interval-ms:600000}")
+    public void cleanupOrphanedDirectUploads() {
+        Set<String> expired = redisTemplate.opsForZSet().rangeByScore(PENDING_INDEX_KEY, 0, System.currentTimeMillis(), 0, 500);
+        if (expired == null || expired.isEmpty()) {
+            return;
+        }
+        int removed = 0;
+        for (String objectName : expired) {
+            // 多节点同时清理时只有 ZREM 成功的节点去删除
+            Long claimed = redisTemplate.opsForZSet().remove(PENDING_INDEX_KEY, objectName);
+            if (claimed == null || claimed == 0) {
+                continue;
+            }
+            Long remainingMs = redisTemplate.getExpire(getPendingKey(objectName), TimeUnit.MILLISECONDS);
+            if (remainingMs != null && remainingMs > 0) {
+                // 凭证还没过期 (节点间时钟偏差)，放回索引等下一轮
+                redisTemplate.opsForZSet().add(PENDING_INDEX_KEY, objectName, System.currentTimeMillis() + remainingMs);
+                continue;
+            }
+            try {
+                fileStorageService.delete(objectName);
+                removed++;
+            } catch (RuntimeException e) {
+                log.warn("清理未完成的直传对象失败: {}", objectName, e);
+            }
+        }
+        if (removed > 0) {
+            log.info("清理未完成的直传对象 {} 个", removed);
+        }
+    }
+
+    @Override
+    public String getThumbnailUrl(String imageUrl) {
+        String prefix = fileStorageService.getUrl("");
+        if (!imageProperties.isEnabled() || imageUrl == null || !imageUrl.startsWith(prefix)) {
+            return imageUrl;
+        }
+        String objectName = imageUrl.substring(prefix.length());
+        if (objectName.startsWith(DIRECT_PREFIX)) {
+            // 直传的图片没有经过服务端处理，缩略图交给存储端实时缩放
+            Integer size = imageProperties.getVariants().get(imageProperties.getListVariant());
+            String resized = size == null ? null : fileStorageService.getResizedUrl(objectName, size);
+            return resized != null ? resized : imageUrl;
+        }
+        Matcher matcher = OBJECT_NAME.matcher(objectName);
+        if (!matcher.matches()) {
+            return imageUrl;
+        }
+        return fileStorageService.getUrl(variantObjectName(matcher.group(1), imageProperties.getListVariant(), matcher.group(2)));
+    }
+
+    private String getPendingKey(String objectName) {
+        return "upload:pending:" + objectName;
+    }
+
+    // 按文件头判断: JPEG / PNG / GIF / WebP
+    private boolean isImageHeader(byte[] head) {
+        if (head.length >= 3 && (head[0] & 0xFF) == 0xFF && (head[1] & 0xFF) == 0xD8 && (head[2] & 0xFF) == 0xFF) {
+            return true;
+        }
+        if (head.length >= 4 && (head[0] & 0xFF) == 0x89 && head[1] == 'P' && head[2] == 'N' && head[3] == 'G') {
+            return true;
+        }
+        if (head.length >= 4 && head[0] == 'G' && head[1] == 'I' && head[2] == 'F' && head[3] == '8') {
+            return true;
+        }
+        return head.length >= 12 && head[0] == 'R' && head[1] == 'I' && head[2] == 'F' && head[3] == 'F'
+                && head[8] == 'W' && head[9] == 'E' && head[10] == 'B' && head[11] == 'P';
+    }
+
+    // 对象名: {uuid}{ext}，缩略图: {uuid}_{variant}{ext}
+    // 读取的同时计算 SHA-256，相同内容已上传过则直接返回已有地址，跳过处理和远端写入
+    private String storeImage(String originalFilename, InputStream in, long size, String contentType) throws IOException {
+        String extension = getExtension(originalFilename);
+        String baseName = UUID.randomUUID().toString();
+        String objectName = baseName + extension;
+
+        if (!imageProperties.isEnabled()) {
+            // 边读边传时写入前还不知道摘要，索引无法用于跳过写入，不登记
+            return fileStorageService.store(objectName, in, size, contentType);
+        }
+
+        long maxBytes = imageProperties.getMaxSourceBytes();
+        if (size > maxBytes) {
+            throw new IllegalArgumentException("图片过大，最大支持 " + maxBytes / 1024 / 1024 + "MB");
+        }
+        // 大小未知 (分块传输) 时按上限预占，读取时不超过预占的字节数
+        long limit = size > 0 ? size : maxBytes;
+        int permits = acquireProcessingBytes(limit);
+        try {
+            return processAndStore(in, extension, baseName, objectName, limit);
+        } finally {
+            processingBytes.release(permits);
+        }
+    }
+
+    private String processAndStore(InputStream in, String extension, String baseName, String objectName,
+                                   long limit) throws IOException {
+        DigestInputStream digestIn = new DigestInputStream(in, newSha256());
+        byte[] source = digestIn.readNBytes((int) Math.min(Integer.MAX_VALUE - 8, limit + 1));
+        if (source.length > limit) {
+            long maxBytes = imageProperties.getMaxSourceBytes();
+            throw new IllegalArgumentException("图片过大，最大支持 " + maxBytes / 1024 / 1024 + "MB");
+        }
+
+        String contentHash = toHex(digestIn.getMessageDigest().digest());
+        String existing = findExistingContent(contentHash);
+        if (existing != null) {
+            dedupeHitCounter.increment();
+            bytesSavedCounter.increment(source.length);
+            return fileStorageService.getUrl(existing);
+        }
+
+        ProcessedImage image = imageProcessingService.process(source, extension);
+        // 先写缩略图再写原图: 拿到原图地址时缩略图一定已经存在
+        for (Map.Entry<String, byte[]> variant : image.getVariants().entrySet()) {
+            byte[] bytes = variant.getValue();
+            fileStorageService.store(variantObjectName(baseName, variant.getKey(), extension),
+                    new ByteArrayInputStream(bytes), bytes.length, image.getContentType());
+        }
+        byte[] main = image.getMain();
+        String url = fileStorageService.store(objectName, new ByteArrayInputStream(main), main.length, image.getContentType());
+        registerContent(contentHash, objectName);
+        return url;
+    }
+
+    private int acquireProcessingBytes(long bytes) {
+        int permits = (int) Math.min(processingPermits, Math.max(1, (bytes + 1023) / 1024));
+        try {
+            if (!processingBytes.tryAcquire(permits, imageProperties.getInFlightWaitMs(), TimeUnit.MILLISECONDS)) {
+                throw new RuntimeException("上传人数过多，请稍后再试");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("上传被中断");
+        }
+        return permits;
+    }
+
+    // 并发上传同一内容时以先登记的为准，后来者的对象只是多存一份，不影响正确性
+    private void registerContent(String contentHash, String objectName) {
+        redisTemplate.opsForValue().setIfAbsent(getContentKey(contentHash), objectName,
+                Duration.ofDays(properties.getDedupeTtlDays()));
+    }
+
+    // 索引指向的对象可能已被删除 (帖子删除、存储端生命周期清理)，命中前先确认，失效的索引顺手删掉
+    private String findExistingContent(String contentHash) {
+        String key = getContentKey(contentHash);
+        String existing = redisTemplate.opsForValue().get(key);
+        if (existing == null) {
+            return null;
+        }
+        if (fileStorageService.stat(existing) == null) {
+            redisTemplate.delete(key);
+            return null;
+        }
+        redisTemplate.expire(key, Duration.ofDays(properties.getDedupeTtlDays()));
+        return existing;
+    }
+
+    // 索引按存储类型区分，切换 oss/local 后不会返回另一个存储中的对象；
+    // 只有经过图片处理的上传才登记 (有缩略图)
+    private String getContentKey(String contentHash) {
+        return "upload:sha256:" + properties.getType() + ":" + contentHash;
+    }
+
+    private MessageDigest newSha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private String toHex(byte[] bytes) {
+        return HexFormat.of().formatHex(bytes);
+    }
+
+    private String variantObjectName(String baseName, String variant, String extension) {
+        return baseName + "_" + variant + extension;
+    }
+
+    private String getExtension(String originalFilename) {
+        String extension = "";
+        if (originalFilename != null && originalFilename.contains(".")) {
+            extension = originalFilename.substring(originalFilename.lastIndexOf(".")).toLowerCase();
+        }
+
+        if (!ALLOWED_EXTENSIONS.contains(extension)) {
+            throw new IllegalArgumentException("不支持的文件格式，仅支持图片");
+        }
+        return extension;
+    }
+}
@@ -0,0 +1,116 @@
+package com.yychainsaw.service.impl;
+
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.yychainsaw.mapper.UserMapper;
+import com.yychainsaw.pojo.entity.User;
+import com.yychainsaw.pojo.vo.UserBriefVO;
+import com.yychainsaw.service.UserProfileService;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * 进程内用户资料缓存 (按数量和写入时间淘汰)
+ * 资料更新时本地失效，并通过 Redis 发布订阅通知其他节点
+ */
+@Service
+public class UserProfileServiceImpl implements UserProfileService, MessageListener {
+
+    private static final String EVICT_CHANNEL = "user:profile:evict";
+
+    @Autowired
+    private UserMapper userMapper;
+    @Autowired
+    private StringRedisTemplate redisTemplate;
+    @Autowired
+    private RedisMessageListenerContainer listenerContainer;
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${qinglian.user-profile-cache.max-size:10000}")
+    private long maxSize;
+    @Value("${qinglian.user-profile-cache.ttl-minutes:10}")
+    private long ttlMinutes;
+
+    private Cache<UUID, UserBriefVO> cache;
+
+    @PostConstruct
+    public void init() {
+        cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofMinutes(ttlMinutes))
+                .recordStats()
+                .build();
+        // 命中/未命中/淘汰指标: cache.gets{cache="userProfile"} 等
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "userProfile");
+        listenerContainer.addMessageListener(this, new ChannelTopic(EVICT_CHANNEL));
+    }
+
+    @Override
+    public UserBriefVO getProfile(UUID userId) {
+        return getProfiles(List.of(userId)).get(userId);
+    }
+
+    @Override
+    public Map<UUID, UserBriefVO> getProfiles(Collection<UUID> userIds) {
+        if (userIds.isEmpty()) {
+            return new HashMap<>();
+        }
+        // 未命中的 id 合并成一次 IN 查询
+        return cache.getAll(new HashSet<>(userIds), this::loadProfiles);
+    }
+
+    private Map<UUID, UserBriefVO> loadProfiles(Set<? extends UUID> userIds) {
+        LambdaQueryWrapper<User> wrapper = new LambdaQueryWrapper<>();
+        wrapper.select(User::getUserId, User::getUsername, User::getNickname, User::getAvatarUrl)
+                .in(User::getUserId, userIds);
+
+        return userMapper.selectList(wrapper).stream()
+                .map(u -> new UserBriefVO(u.getUserId(), u.getUsername(), u.getNickname(), u.getAvatarUrl()))
+                .collect(Collectors.toMap(UserBriefVO::getUserId, Function.identity()));
+    }
+
+    @Override
+    public void evict(UUID userId) {
+        // 在事务中调用时等提交后再失效，否则并发读可能把未提交前的旧资料重新装回缓存
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    doEvict(userId);
+                }
+            });
+        } else {
+            doEvict(userId);
+        }
+    }
+
+    private void doEvict(UUID userId) {
+        cache.invalidate(userId);
+        redisTemplate.convertAndSend(EVICT_CHANNEL, userId.toString());
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String userId = new String(message.getBody(), StandardCharsets.UTF_8);
+        cache.invalidate(UUID.fromString(userId));
+    }
+}
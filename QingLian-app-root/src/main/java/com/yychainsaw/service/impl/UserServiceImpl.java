@@ -11,22 +11,30 @@ import com.yychainsaw.pojo.dto.UserUpdateDTO;
 import com.yychainsaw.pojo.entity.User;
 import com.yychainsaw.pojo.vo.UserSocialDashboardVO;
 import com.yychainsaw.pojo.vo.UserVO;
+import com.yychainsaw.service.BadgeService;
+import com.yychainsaw.service.UserProfileService;
 import com.yychainsaw.service.UserService;
 import com.yychainsaw.utils.ThreadLocalUtil;
 import io.micrometer.common.util.StringUtils;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.BeanUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
+@Slf4j
 @Service
 public class UserServiceImpl implements UserService {
 
@@ -36,6 +44,13 @@ public class UserServiceImpl implements UserService {
     private StringRedisTemplate redisTemplate;
     @Autowired
     private ObjectMapper objectMapper;
+    @Autowired
+    private UserProfileService userProfileService;
+    @Autowired
+    private BadgeService badgeService;
+
+    // 待写库的最后登录时间: userId -> 登录时间
+    private final ConcurrentHashMap<UUID, LocalDateTime> pendingLoginTimes = new ConcurrentHashMap<>();
 
     private String getUserCacheKey(UUID userId) {
         return "user:info:" + userId.toString();
@@ -102,6 +117,7 @@ public class UserServiceImpl implements UserService {
         userMapper.updateById(user);
 
         redisTemplate.delete(getUserCacheKey(userId));
+        userProfileService.evict(userId);
     }
 
     @Override
@@ -109,14 +125,36 @@ public class UserServiceImpl implements UserService {
     public void deleteUser() {
         UUID userId = ThreadLocalUtil.getCurrentUserId();
         userMapper.deleteById(userId);
+        userProfileService.evict(userId);
     }
 
     @Override
     public void updateLastLoginTime(UUID userId) {
-        User user = new User();
-        user.setUserId(userId);
-        user.setLastLoginTime(LocalDateTime.now());
-        userMapper.updateById(user);
+        // 同一用户多次登录只保留最新时间，登录请求不再同步 UPDATE
+        pendingLoginTimes.put(userId, LocalDateTime.now());
+    }
+
+    @Override
+    @Scheduled(fixedDelayString = "${qinglian.last-login.flush-interval-ms:10000}")
+    @PreDestroy
+    public void flushLastLoginTimes() {
+        if (pendingLoginTimes.isEmpty()) {
+            return;
+        }
+        Map<UUID, LocalDateTime> batch = new HashMap<>();
+        for (UUID userId : pendingLoginTimes.keySet()) {
+            LocalDateTime time = pendingLoginTimes.remove(userId);
+            if (time != null) {
+                batch.put(userId, time);
+            }
+        }
+        try {
+            userMapper.updateLastLoginTimes(batch);
+        } catch (Exception e) {
+            // 写库失败放回去，下一轮重试 (期间有更新的登录时间则以新的为准)
+            batch.forEach((userId, time) -> pendingLoginTimes.merge(userId, time, (a, b) -> a.isAfter(b) ? a : b));
+            log.warn("批量更新最后登录时间失败, 条数: {}", batch.size(), e);
+        }
     }
 
     @Override
@@ -153,22 +191,25 @@ public class UserServiceImpl implements UserService {
         UUID userId = ThreadLocalUtil.getCurrentUserId();
         String key = "user:dashboard" + userId;
 
+        UserSocialDashboardVO vo;
         String cacheValue = redisTemplate.opsForValue().get(key);
         if  (StringUtils.isNotBlank(cacheValue)) {
             try {
-                return objectMapper.readValue(cacheValue, UserSocialDashboardVO.class);
+                vo = objectMapper.readValue(cacheValue, UserSocialDashboardVO.class);
+            } catch (JsonProcessingException e) {
+                throw new RuntimeException(e);
+            }
+        } else {
+            vo = userMapper.selectUserSocialDashboard(userId);
+            try {
+                redisTemplate.opsForValue().set(key, objectMapper.writeValueAsString(vo), 5, TimeUnit.MINUTES);
             } catch (JsonProcessingException e) {
                 throw new RuntimeException(e);
             }
         }
 
-        UserSocialDashboardVO vo = userMapper.selectUserSocialDashboard(userId);
-        try {
-            redisTemplate.opsForValue().set(key, objectMapper.writeValueAsString(vo), 5, TimeUnit.MINUTES);
-        } catch (JsonProcessingException e) {
-            throw new RuntimeException(e);
-        }
-
+        // 未读数取角标计数，与 /user/queue/badges 推送的值一致，不随 5 分钟缓存滞后
+        vo.setUnreadMessages(badgeService.getBadges(userId).get(BadgeService.MESSAGES).intValue());
         return vo;
     }
 
@@ -181,6 +222,9 @@ public class UserServiceImpl implements UserService {
                      .set(User::getAvatarUrl, avatarUrl);
 
         userMapper.update(null, updateWrapper);
+
+        redisTemplate.delete(getUserCacheKey(userId));
+        userProfileService.evict(userId);
     }
 
 }
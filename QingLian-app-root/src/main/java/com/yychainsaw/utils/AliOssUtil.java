@@ -1,92 +0,0 @@
-package com.yychainsaw.utils;
-
-import com.aliyun.oss.*;
-import com.aliyun.oss.common.auth.DefaultCredentialProvider;
-import com.aliyun.oss.common.comm.SignVersion;
-import com.aliyun.oss.model.PutObjectRequest;
-import com.aliyun.oss.model.PutObjectResult;
-import com.yychainsaw.pojo.AliOssProperties;
-import jakarta.annotation.PostConstruct;
-import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.stereotype.Component;
-
-import java.io.InputStream;
-
-@Component
-public class AliOssUtil {
-
-    @Autowired
-    private AliOssProperties properties;
-
-    private static AliOssProperties aliOssProperties;
-
-    private static final String REGION = "cn-hangzhou";
-
-    @PostConstruct
-    public void init() {
-        // 将注入的实例赋给静态字段
-        aliOssProperties = this.properties;
-    }
-
-    @Autowired
-    private void setAliOssProperties(AliOssProperties aliOssProperties) {
-        AliOssUtil.aliOssProperties = aliOssProperties;
-    }
-
-    public static String uploadFile(String objectName, InputStream in) throws Exception {
-
-        String endpoint = aliOssProperties.getEndpoint();
-        String accessKeyId = aliOssProperties.getAccessKeyId();
-        String accessKeySecret = aliOssProperties.getAccessKeySecret();
-        String bucketName = "qinglian-yychiansaw";
-
-        // 创建OSSClient实例。
-        // 当OSSClient实例不再使用时，调用shutdown方法以释放资源。
-        ClientBuilderConfiguration clientBuilderConfiguration = new ClientBuilderConfiguration();
-        clientBuilderConfiguration.setSignatureVersion(SignVersion.V4);
-        OSS ossClient = OSSClientBuilder.create()
-                .endpoint(endpoint)
-                .credentialsProvider(new DefaultCredentialProvider(accessKeyId, accessKeySecret))
-                .clientConfiguration(clientBuilderConfiguration)
-                .region(REGION)
-                .build();
-
-        String url = "";
-        try {
-            // 填写字符串。
-            String content = "Hello OSS，你好世界";
-
-            // 创建PutObjectRequest对象。
-            PutObjectRequest putObjectRequest = new PutObjectRequest(bucketName, objectName, in);
-
-            // 如果需要上传时设置存储类型和访问权限，请参考以下示例代码。
-            // ObjectMetadata metadata = new ObjectMetadata();
-            // metadata.setHeader(OSSHeaders.OSS_STORAGE_CLASS, StorageClass.Standard.toString());
-            // metadata.setObjectAcl(CannedAccessControlList.Private);
-            // putObjectRequest.setMetadata(metadata);
-
-            // 上传字符串。
-            PutObjectResult result = ossClient.putObject(putObjectRequest);
-
-            url = "https://" + bucketName + "." + endpoint.substring(endpoint.lastIndexOf("/")+1) + "/" + objectName;
-        } catch (OSSException oe) {
-            System.out.println("Caught an OSSException, which means your request made it to OSS, "
-                    + "but was rejected with an error response for some reason.");
-            System.out.println("Error Message:" + oe.getErrorMessage());
-            System.out.println("Error Code:" + oe.getErrorCode());
-            System.out.println("Request ID:" + oe.getRequestId());
-            System.out.println("Host ID:" + oe.getHostId());
-        } catch (ClientException ce) {
-            System.out.println("Caught an ClientException, which means the client encountered "
-                    + "a serious internal problem while trying to communicate with OSS, "
-                    + "such as not being able to access the network.");
-            System.out.println("Error Message:" + ce.getMessage());
-        } finally {
-            if (ossClient != null) {
-                ossClient.shutdown();
-            }
-        }
-
-        return url;
-    }
-}
\ No newline at end of file
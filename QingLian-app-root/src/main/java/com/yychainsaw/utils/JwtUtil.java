@@ -1,30 +1,49 @@
 package com.yychainsaw.utils;
 
 import com.auth0.jwt.JWT;
+import com.auth0.jwt.JWTVerifier;
 import com.auth0.jwt.algorithms.Algorithm;
+import com.auth0.jwt.interfaces.DecodedJWT;
+import org.springframework.util.DigestUtils;
 
+import java.nio.charset.StandardCharsets;
 import java.util.Date;
 import java.util.Map;
+import java.util.UUID;
 
 public class JwtUtil {
 
     private static final String KEY = "YYchainsAw";
+
+    // Algorithm 和 JWTVerifier 都是线程安全的，全局复用一份
+    private static final Algorithm ALGORITHM = Algorithm.HMAC256(KEY);
+    private static final JWTVerifier VERIFIER = JWT.require(ALGORITHM).build();
 	
 	//接收业务数据,生成token并返回
     public static String genToken(Map<String, Object> claims) {
         return JWT.create()
+                .withJWTId(UUID.randomUUID().toString())
                 .withClaim("claims", claims)
                 .withExpiresAt(new Date(System.currentTimeMillis() + 1000 * 60 * 60 * 12))
-                .sign(Algorithm.HMAC256(KEY));
+                .sign(ALGORITHM);
     }
 
 	//接收token,验证token,并返回业务数据
     public static Map<String, Object> parseToken(String token) {
-        return JWT.require(Algorithm.HMAC256(KEY))
-                .build()
-                .verify(token)
-                .getClaim("claims")
-                .asMap();
+        return verify(token).getClaim("claims").asMap();
+    }
+
+    //验证token,返回解码结果 (可取 jti / 过期时间)
+    public static DecodedJWT verify(String token) {
+        return VERIFIER.verify(token);
+    }
+
+    //token 的唯一标识: 优先 jti，旧 token 没有 jti 时用 token 摘要代替
+    public static String tokenId(DecodedJWT jwt) {
+        if (jwt.getId() != null) {
+            return jwt.getId();
+        }
+        return DigestUtils.md5DigestAsHex(jwt.getToken().getBytes(StandardCharsets.UTF_8));
     }
 
 }
@@ -10,16 +10,16 @@ public class Md5Util {
      */
     protected static char hexDigits[] = {'0', '1', '2', '3', '4', '5', '6', '7', '8', '9', 'a', 'b', 'c', 'd', 'e', 'f'};
 
-    protected static MessageDigest messagedigest = null;
-
-    static {
+    /**
+     * MessageDigest 不是线程安全的，多个线程共用一个实例会算出错误的摘要，这里每个线程各持一份
+     */
+    private static final ThreadLocal<MessageDigest> MESSAGE_DIGEST = ThreadLocal.withInitial(() -> {
         try {
-            messagedigest = MessageDigest.getInstance("MD5");
+            return MessageDigest.getInstance("MD5");
         } catch (NoSuchAlgorithmException nsaex) {
-            System.err.println(Md5Util.class.getName() + "初始化失败，MessageDigest不支持MD5Util。");
-            nsaex.printStackTrace();
+            throw new IllegalStateException(Md5Util.class.getName() + "初始化失败，MessageDigest不支持MD5Util。", nsaex);
         }
-    }
+    });
 
     /**
      * 生成字符串的md5校验值
@@ -45,8 +45,7 @@ public class Md5Util {
 
 
     public static String getMD5String(byte[] bytes) {
-        messagedigest.update(bytes);
-        return bufferToHex(messagedigest.digest());
+        return bufferToHex(MESSAGE_DIGEST.get().digest(bytes));
     }
 
     private static String bufferToHex(byte bytes[]) {
@@ -1,22 +1,22 @@
 package com.yychainsaw.utils;
 
-import java.util.Map;
+import com.yychainsaw.pojo.LoginUser;
+
 import java.util.UUID;
 
 
-@SuppressWarnings("all")
 public class ThreadLocalUtil {
     //提供ThreadLocal对象,
-    private static final ThreadLocal THREAD_LOCAL = new ThreadLocal();
+    private static final ThreadLocal<LoginUser> THREAD_LOCAL = new ThreadLocal<>();
 
-    //根据键获取值
-    public static <T> T get(){
-        return (T) THREAD_LOCAL.get();
+    //获取当前登录用户，未登录时为 null
+    public static LoginUser get(){
+        return THREAD_LOCAL.get();
     }
 	
-    //存储键值对
-    public static void set(Object value){
-        THREAD_LOCAL.set(value);
+    //存储当前登录用户
+    public static void set(LoginUser loginUser){
+        THREAD_LOCAL.set(loginUser);
     }
 
 
@@ -26,10 +26,32 @@ public class ThreadLocalUtil {
     }
 
     public static UUID getCurrentUserId() {
-        Map<String, Object> claims = get();
-        if (claims != null && claims.get("id") != null) {
-            return UUID.fromString((String) claims.get("id"));
+        return getCurrentUser().getUserId();
+    }
+
+    public static LoginUser getCurrentUser() {
+        LoginUser loginUser = get();
+        if (loginUser == null) {
+            throw new RuntimeException("未获取到登录用户信息");
         }
-        throw new RuntimeException("未获取到登录用户信息");
+        return loginUser;
+    }
+
+    //把当前线程的登录用户带到另一个线程执行 (线程池 / 虚拟线程都适用)，执行完恢复目标线程原来的值
+    public static Runnable wrap(Runnable task) {
+        LoginUser captured = get();
+        return () -> {
+            LoginUser previous = get();
+            set(captured);
+            try {
+                task.run();
+            } finally {
+                if (previous == null) {
+                    remove();
+                } else {
+                    set(previous);
+                }
+            }
+        };
     }
 }
@@ -0,0 +1,70 @@
+package com.yychainsaw.benchmark;
+
+import com.yychainsaw.utils.Md5Util;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.security.crypto.password.Pbkdf2PasswordEncoder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 密码校验吞吐基准 (非单元测试，不会被 surefire 执行)
+ * 用于给 qinglian.password.bcrypt-cost / pool-size 选值，按每秒校验次数输出。
+ *
+ * 运行:
+ *   mvn -q test-compile dependency:build-classpath -Dmdep.outputFile=target/cp.txt
+ *   java -cp target/classes:target/test-classes:$(cat target/cp.txt) \
+ *        com.yychainsaw.benchmark.PasswordHashBenchmark [线程数, 默认 CPU 核数] [每项秒数, 默认 5]
+ */
+public class PasswordHashBenchmark {
+
+    private static final String PASSWORD = "qinglian-benchmark-123";
+
+    public static void main(String[] args) throws Exception {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        System.out.printf("线程数 %d, 每项 %d 秒, CPU 核数 %d%n", threads, seconds, Runtime.getRuntime().availableProcessors());
+
+        run("md5 (旧数据)", null, threads, seconds);
+        for (int cost : new int[]{8, 10, 12}) {
+            run("bcrypt cost " + cost, new BCryptPasswordEncoder(cost), threads, seconds);
+        }
+        run("pbkdf2 (spring 5.8 默认)", Pbkdf2PasswordEncoder.defaultsForSpringSecurity_v5_8(), threads, seconds);
+    }
+
+    private static void run(String name, PasswordEncoder encoder, int threads, int seconds) throws Exception {
+        String hash = encoder == null ? Md5Util.getMD5String(PASSWORD) : encoder.encode(PASSWORD);
+        Runnable verify = encoder == null
+                ? () -> Md5Util.getMD5String(PASSWORD).equals(hash)
+                : () -> encoder.matches(PASSWORD, hash);
+
+        // 预热，排除 JIT 编译
+        long warmupEnd = System.nanoTime() + TimeUnit.SECONDS.toNanos(1);
+        while (System.nanoTime() < warmupEnd) {
+            verify.run();
+        }
+
+        LongAdder count = new LongAdder();
+        long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            futures.add(pool.submit(() -> {
+                while (System.nanoTime() < end) {
+                    verify.run();
+                    count.increment();
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        pool.shutdown();
+
+        double perSecond = count.sum() / (double) seconds;
+        System.out.printf("%-24s %12.1f 次/秒  (%.2f ms/次/线程)%n", name, perSecond, threads * 1000.0 / perSecond);
+    }
+}
@@ -0,0 +1,157 @@
+package com.yychainsaw.service.impl;
+
+import com.yychainsaw.mapper.ConversationMapper;
+import com.yychainsaw.mapper.MessageMapper;
+import com.yychainsaw.pojo.MessagePipelineProperties;
+import com.yychainsaw.pojo.entity.Message;
+import com.yychainsaw.pojo.vo.MessageAckVO;
+import com.yychainsaw.service.MessageDeliveryService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.TransientDataAccessResourceException;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * 不启动落库线程: submit 只入队，由测试取出队列内容直接调用 flush，结果与调度无关
+ */
+class MessagePipelineServiceImplTest {
+
+    private static final String POISON = "c3";
+
+    private final UUID senderId = UUID.randomUUID();
+    private MessagePipelineServiceImpl pipeline;
+    private MessageMapper messageMapper;
+    private MessageDeliveryService messageDeliveryService;
+    // 模拟 messages 主键序列
+    private long sequence = 100;
+    // 成功写入的 clientMsgId
+    private final List<String> inserted = new ArrayList<>();
+    // 落库回调收到的消息
+    private final List<Message> persisted = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        messageMapper = mock(MessageMapper.class);
+        messageDeliveryService = mock(MessageDeliveryService.class);
+
+        MessagePipelineProperties properties = new MessagePipelineProperties();
+        properties.setEnabled(true);
+
+        pipeline = new MessagePipelineServiceImpl();
+        ReflectionTestUtils.setField(pipeline, "properties", properties);
+        ReflectionTestUtils.setField(pipeline, "messageMapper", messageMapper);
+        ReflectionTestUtils.setField(pipeline, "conversationMapper", mock(ConversationMapper.class));
+        ReflectionTestUtils.setField(pipeline, "redisTemplate", mock(StringRedisTemplate.class));
+        ReflectionTestUtils.setField(pipeline, "messageDeliveryService", messageDeliveryService);
+        ReflectionTestUtils.setField(pipeline, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.invokeMethod(pipeline, "init");
+    }
+
+    @Test
+    void poisonRowDoesNotLoseRestOfBatch() {
+        // 批量写入只要包含坏行就整批失败，单独写坏行也失败
+        when(messageMapper.insertBatch(anyList())).thenAnswer(invocation -> {
+            List<Message> rows = invocation.getArgument(0);
+            if (rows.stream().anyMatch(m -> POISON.equals(m.getClientMsgId()))) {
+                throw new DataIntegrityViolationException("poison row");
+            }
+            return rows.stream().map(this::assignId).toList();
+        });
+
+        flushQueued(5);
+
+        assertEquals(List.of("c1", "c2", "c4", "c5"), inserted);
+        // msg_id 按写入顺序分配，回调拿到的是回填后的 msg_id
+        assertEquals(List.of(101L, 102L, 103L, 104L), persisted.stream().map(Message::getMsgId).toList());
+        Map<String, MessageAckVO> acks = capturedAcks();
+        assertEquals("FAILED", acks.remove(POISON).getStatus());
+        assertEquals(4, acks.size());
+        assertTrue(acks.values().stream().allMatch(a -> "PERSISTED".equals(a.getStatus()) && a.getId() != null));
+    }
+
+    @Test
+    void transientFailureIsRequeuedInsteadOfFailed() {
+        when(messageMapper.insertBatch(anyList()))
+                .thenThrow(new TransientDataAccessResourceException("connection reset"));
+
+        flushQueued(3);
+
+        ArrayDeque<?> retryBuffer = (ArrayDeque<?>) ReflectionTestUtils.getField(pipeline, "retryBuffer");
+        assertEquals(3, retryBuffer.size());
+        verify(messageDeliveryService, never()).sendToUser(any(), eq("/queue/acks"), any());
+        assertTrue(persisted.isEmpty());
+        // 数据库不可用时批内剩余的行不再逐行尝试: 1 次整批 + 1 次首行
+        verify(messageMapper, times(2)).insertBatch(anyList());
+    }
+
+    @Test
+    void retryOfCommittedRowResolvesExistingMsgId() {
+        // 上次尝试实际已提交: 唯一索引冲突被跳过，不在 RETURNING 中，按 clientMsgId 回查
+        when(messageMapper.insertBatch(anyList())).thenReturn(List.of());
+        when(messageMapper.selectByClientMsgIds(anyList())).thenAnswer(invocation -> {
+            List<Message> rows = invocation.getArgument(0);
+            return rows.stream().map(this::assignId).toList();
+        });
+
+        flushQueued(2);
+
+        assertEquals(List.of(101L, 102L), persisted.stream().map(Message::getMsgId).toList());
+        Map<String, MessageAckVO> acks = capturedAcks();
+        assertEquals(101L, acks.get("c1").getId());
+        assertEquals("PERSISTED", acks.get("c2").getStatus());
+    }
+
+    // 通过 submit 入队，再在测试线程上落库
+    @SuppressWarnings("unchecked")
+    private void flushQueued(int size) {
+        for (int i = 1; i <= size; i++) {
+            Message m = new Message();
+            m.setSenderId(senderId);
+            m.setGroupId(1L);
+            m.setContent("msg " + i);
+            m.setClientMsgId("c" + i);
+            pipeline.submit(m, persisted::add);
+        }
+        BlockingQueue<Object> queue = (BlockingQueue<Object>) ReflectionTestUtils.getField(pipeline, "queue");
+        List<Object> batch = new ArrayList<>();
+        queue.drainTo(batch);
+        assertEquals(size, batch.size());
+        ReflectionTestUtils.invokeMethod(pipeline, "flush", batch);
+    }
+
+    private Message assignId(Message m) {
+        inserted.add(m.getClientMsgId());
+        Message row = new Message();
+        row.setMsgId(++sequence);
+        row.setSenderId(m.getSenderId());
+        row.setClientMsgId(m.getClientMsgId());
+        return row;
+    }
+
+    private Map<String, MessageAckVO> capturedAcks() {
+        ArgumentCaptor<Object> payloads = ArgumentCaptor.forClass(Object.class);
+        verify(messageDeliveryService, atLeastOnce()).sendToUser(any(), eq("/queue/acks"), payloads.capture());
+        return payloads.getAllValues().stream()
+                .map(MessageAckVO.class::cast)
+                .collect(Collectors.toMap(MessageAckVO::getClientMsgId, a -> a));
+    }
+}
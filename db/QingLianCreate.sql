@@ -28,7 +28,8 @@ CREATE TABLE users (
 );
 
 -- 绑定触发器
-CREATE TRIGGER update_users_modtime BEFORE UPDATE ON users FOR EACH ROW EXECUTE FUNCTION update_updated_at_column();
+-- 只有资料字段变化才刷新 updated_at，登录时间的批量写入不触发
+CREATE TRIGGER update_users_modtime BEFORE UPDATE OF username, password_hash, nickname, avatar_url, gender, height_cm, weight_kg ON users FOR EACH ROW EXECUTE FUNCTION update_updated_at_column();
 
 -- ==========================================
 -- Movements 表 (动作库，通常变动少，ID保持 Serial)
@@ -87,14 +88,24 @@ CREATE TABLE posts (
     user_id     UUID REFERENCES users(user_id) ON DELETE CASCADE,
     content     TEXT,
     image_urls  TEXT[], -- PostgreSQL 数组类型
+    thumbnail_urls TEXT[], -- 与 image_urls 一一对应的列表页缩略图
     likes_count INTEGER DEFAULT 0,
     created_at  TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
     updated_at  TIMESTAMP DEFAULT CURRENT_TIMESTAMP
 );
 
-CREATE INDEX idx_posts_user_id ON posts(user_id);
-CREATE INDEX idx_posts_created_at ON posts(created_at DESC); -- 优化: 首页Feed流按时间倒序
-CREATE TRIGGER update_posts_modtime BEFORE UPDATE ON posts FOR EACH ROW EXECUTE FUNCTION update_updated_at_column();
+CREATE INDEX idx_posts_user_post ON posts(user_id, post_id DESC); -- 优化: 按作者取最新帖子 (时间线重建/大V拉取)
+CREATE INDEX idx_posts_created_id ON posts(created_at DESC, post_id DESC); -- 优化: 首页Feed流按 (时间, id) 键集分页
+-- 只在内容变化时更新 updated_at，点赞数批量落库不触发
+CREATE TRIGGER update_posts_modtime BEFORE UPDATE OF content, image_urls ON posts FOR EACH ROW EXECUTE FUNCTION update_updated_at_column();
+
+-- 点赞增量落库批次，与 likes_count 的 UPDATE 同一事务写入，保证同一批增量只累加一次
+CREATE TABLE post_like_flushes (
+    flush_id   VARCHAR(36) PRIMARY KEY,
+    flushed_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+);
+
+CREATE INDEX idx_post_like_flushes_flushed_at ON post_like_flushes(flushed_at); -- 优化: 定期清理过期批次
 
 -- ==========================================
 -- Friendships 表 (复合主键)
@@ -118,10 +129,69 @@ CREATE TABLE messages (
     msg_id      BIGSERIAL PRIMARY KEY,
     sender_id   UUID REFERENCES users(user_id) ON DELETE SET NULL,
     receiver_id UUID REFERENCES users(user_id) ON DELETE SET NULL,
+    group_id    BIGINT, -- 群聊消息时非空，私聊为 NULL
     content     TEXT,
     is_read     BOOLEAN DEFAULT FALSE,
-    sent_at     TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+    sent_at     TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    type        VARCHAR(20) DEFAULT 'TEXT',
+    client_msg_id VARCHAR(64) -- 异步落库模式下发送端生成的消息 ID，用于回执和重试去重
 );
 
-CREATE INDEX idx_messages_sender_receiver ON messages(sender_id, receiver_id); -- 优化: 聊天记录查询
+CREATE INDEX idx_messages_sender_receiver_id ON messages(sender_id, receiver_id, msg_id DESC); -- 优化: 私聊记录游标分页 (按 msg_id 范围扫描)
+CREATE INDEX idx_messages_group_id ON messages(group_id, msg_id DESC) WHERE group_id IS NOT NULL; -- 优化: 群聊记录游标分页
 CREATE INDEX idx_messages_unread ON messages(receiver_id) WHERE is_read = FALSE; -- 优化: 快速统计未读消息
+CREATE UNIQUE INDEX uk_messages_client_msg_id ON messages(sender_id, client_msg_id) WHERE client_msg_id IS NOT NULL; -- 异步落库重试幂等
+
+-- ==========================================
+-- 群聊相关表
+-- ==========================================
+CREATE TABLE chat_groups (
+    group_id   BIGSERIAL PRIMARY KEY,
+    name       VARCHAR(100) NOT NULL,
+    owner_id   UUID REFERENCES users(user_id) ON DELETE SET NULL,
+    avatar_url VARCHAR(255),
+    notice     TEXT,
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+);
+
+CREATE TABLE group_members (
+    group_id  BIGINT NOT NULL REFERENCES chat_groups(group_id) ON DELETE CASCADE,
+    user_id   UUID NOT NULL REFERENCES users(user_id) ON DELETE CASCADE,
+    role      VARCHAR(20) DEFAULT 'MEMBER' CHECK (role IN ('OWNER', 'ADMIN', 'MEMBER')),
+    joined_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    PRIMARY KEY (group_id, user_id)
+);
+
+CREATE INDEX idx_group_members_user_id ON group_members(user_id); -- 优化: 查询我加入的群
+
+-- 群消息已读水位 (群未读数的对账基准)
+CREATE TABLE group_read_status (
+    group_id         BIGINT NOT NULL REFERENCES chat_groups(group_id) ON DELETE CASCADE,
+    user_id          UUID NOT NULL REFERENCES users(user_id) ON DELETE CASCADE,
+    last_read_msg_id BIGINT NOT NULL DEFAULT 0,
+    PRIMARY KEY (group_id, user_id)
+);
+
+-- ==========================================
+-- Conversations 表 (私聊会话摘要，由发送/已读写路径增量维护)
+-- ==========================================
+CREATE TABLE conversations (
+    owner_id          UUID NOT NULL REFERENCES users(user_id) ON DELETE CASCADE,
+    peer_id           UUID NOT NULL REFERENCES users(user_id) ON DELETE CASCADE,
+    last_msg_id       BIGINT NOT NULL,
+    last_message      VARCHAR(100),
+    last_message_time TIMESTAMP,
+    unread_count      INTEGER NOT NULL DEFAULT 0,
+    PRIMARY KEY (owner_id, peer_id) -- 好友列表按 owner_id 一次索引关联
+);
+
+-- 已有数据回填 (对空库无影响)
+INSERT INTO conversations (owner_id, peer_id, last_msg_id, last_message, last_message_time, unread_count)
+SELECT DISTINCT ON (pair.owner_id, pair.peer_id)
+       pair.owner_id, pair.peer_id, m.msg_id, LEFT(m.content, 100), m.sent_at,
+       (SELECT COUNT(*) FROM messages u
+        WHERE u.sender_id = pair.peer_id AND u.receiver_id = pair.owner_id AND u.is_read = FALSE)
+FROM messages m
+         CROSS JOIN LATERAL (VALUES (m.sender_id, m.receiver_id), (m.receiver_id, m.sender_id)) AS pair(owner_id, peer_id)
+WHERE m.receiver_id IS NOT NULL AND m.sender_id IS NOT NULL AND m.sender_id <> m.receiver_id
+ORDER BY pair.owner_id, pair.peer_id, m.msg_id DESC;